@@ -0,0 +1,30 @@
+package com.estella.stopwatch.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the stopwatch benchmarks with the GC profiler attached, so every run
+ * reports allocation per operation, and writes the results as JSON so they
+ * can be compared over time.  Accepts the usual JMH command line options,
+ * e.g. <code>java -jar benchmarks/target/benchmarks.jar LapBenchmark -t 8</code>.
+ */
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions cmdOptions = new CommandLineOptions(args);
+    Options options = new OptionsBuilder()
+        .parent(cmdOptions)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(cmdOptions.getResult().orElse("jmh-result.json"))
+        .build();
+    new Runner(options).run();
+  }
+}
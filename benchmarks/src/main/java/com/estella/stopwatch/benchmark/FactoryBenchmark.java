@@ -0,0 +1,52 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchKind;
+
+/**
+ * Creation rate of StopwatchFactory.getStopwatch, from one thread and from
+ * one thread per core.  Creation takes no global lock, so the time per batch
+ * should stay roughly flat as threads are added.  The factory keeps every
+ * watch it creates, so this measures fixed-size batches rather than running
+ * for a fixed time, which keeps the factory's map bounded.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, batchSize = 10000)
+@Measurement(iterations = 20, batchSize = 10000)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactoryBenchmark {
+  private static final AtomicLong ids = new AtomicLong();
+
+  @Param({"SYNCHRONIZED", "LOCK_FREE", "STRIPED"})
+  public StopwatchKind kind;
+
+  @Benchmark
+  @Threads(1)
+  public IStopwatch getStopwatch() {
+    return StopwatchFactory.getStopwatch("factory-" + ids.incrementAndGet(), kind);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public IStopwatch getStopwatchAllCores() {
+    return StopwatchFactory.getStopwatch("factory-" + ids.incrementAndGet(), kind);
+  }
+}
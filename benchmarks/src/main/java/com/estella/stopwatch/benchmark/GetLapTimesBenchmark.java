@@ -0,0 +1,57 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchKind;
+
+/**
+ * Cost of reading back the laps of a stopped watch holding 10, 10k and 10M laps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class GetLapTimesBenchmark {
+  private static final AtomicLong ids = new AtomicLong();
+
+  @Param({"SYNCHRONIZED", "LOCK_FREE", "STRIPED"})
+  public StopwatchKind kind;
+
+  @Param({"10", "10000", "10000000"})
+  public int laps;
+
+  private IStopwatch watch;
+
+  @Setup
+  public void recordLaps() {
+    watch = StopwatchFactory.getStopwatch("laptimes-" + ids.incrementAndGet(), kind);
+    watch.start();
+    for (int i = 1; i < laps; i++) {
+      watch.lap();
+    }
+    watch.stop();
+  }
+
+  @Benchmark
+  public List<Long> getLapTimes() {
+    return watch.getLapTimes();
+  }
+}
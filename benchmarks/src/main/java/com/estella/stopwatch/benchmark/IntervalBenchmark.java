@@ -0,0 +1,70 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchKind;
+
+/**
+ * Throughput of begin()/end() with 1 to 16 threads timing overlapping
+ * intervals on one shared stopwatch.  The watch is reset before every
+ * iteration so the lap history stays bounded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class IntervalBenchmark {
+  private static final AtomicLong ids = new AtomicLong();
+
+  @Param({"SYNCHRONIZED", "LOCK_FREE", "STRIPED"})
+  public StopwatchKind kind;
+
+  private IStopwatch watch;
+
+  @Setup(Level.Trial)
+  public void createWatch() {
+    watch = StopwatchFactory.getStopwatch("interval-" + ids.incrementAndGet(), kind);
+  }
+
+  @Setup(Level.Iteration)
+  public void resetWatch() {
+    watch.reset();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void interval01() {
+    watch.end(watch.begin());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void interval04() {
+    watch.end(watch.begin());
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void interval16() {
+    watch.end(watch.begin());
+  }
+}
@@ -0,0 +1,74 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.StopwatchFactory;
+
+/**
+ * A per-request timing cycle (get, start, lap, stop, release) with a fresh
+ * stopwatch per request versus a pooled one.  The ids are built up front so
+ * that gc.alloc.rate.norm shows only what the factory allocates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PoolBenchmark {
+  private static final AtomicLong threads = new AtomicLong();
+  private static final int IDS = 1024;
+
+  private String[] ids;
+  private int next;
+
+  @Setup
+  public void buildIds() {
+    long thread = threads.incrementAndGet();
+    ids = new String[IDS];
+    for (int i = 0; i < IDS; i++) {
+      ids[i] = "request-" + thread + "-" + i;
+    }
+  }
+
+  private String nextId() {
+    next = (next + 1) & (IDS - 1);
+    return ids[next];
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void fresh() {
+    IStopwatch watch = StopwatchFactory.getStopwatch(nextId());
+    time(watch);
+    StopwatchFactory.releaseStopwatch(watch);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void pooled() {
+    IStopwatch watch = StopwatchFactory.getPooledStopwatch(nextId());
+    time(watch);
+    StopwatchFactory.releaseStopwatch(watch);
+  }
+
+  private static void time(IStopwatch watch) {
+    watch.start();
+    watch.lap();
+    watch.stop();
+  }
+}
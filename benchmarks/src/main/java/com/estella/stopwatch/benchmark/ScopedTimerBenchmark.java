@@ -0,0 +1,41 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.impl.ScopedTimer;
+import com.estella.stopwatch.impl.StopwatchConfig;
+
+/**
+ * Cost of timing an empty block with a ScopedTimer.  The stopwatches keep
+ * a fixed number of laps, so gc.alloc.rate.norm should be zero.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScopedTimerBenchmark {
+  private final ScopedTimer timer = ScopedTimer.create("scoped-" + System.identityHashCode(this),
+      StopwatchConfig.defaults().withLapRetention(1024));
+
+  @Benchmark
+  @Threads(4)
+  @SuppressWarnings("try")
+  public void scope() {
+    try (ScopedTimer.Scope scope = timer.begin()) {
+      // the timed block is empty
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchSnapshot;
+
+/**
+ * Cost of dumping every watch in the factory at 100k and 1M watches, each
+ * with a few laps: the parallel snapshotStopwatches() against walking
+ * getStopwatches() and calling toString() on each watch.  The parallel
+ * snapshot scales with the cores of the common fork-join pool.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int watches;
+
+  @Setup
+  public void createWatches() {
+    for (int i = 0; i < watches; i++) {
+      IStopwatch watch = StopwatchFactory.getStopwatch("snapshot-" + i);
+      watch.start();
+      watch.lap();
+      watch.lap();
+      if (i % 2 == 0) {
+        watch.stop();
+      }
+    }
+  }
+
+  @TearDown
+  public void releaseWatches() {
+    for (int i = 0; i < watches; i++) {
+      StopwatchFactory.releaseStopwatch("snapshot-" + i);
+    }
+  }
+
+  @Benchmark
+  public List<StopwatchSnapshot> snapshotParallel() {
+    return StopwatchFactory.snapshotStopwatches();
+  }
+
+  @Benchmark
+  public void toStringSerial(Blackhole bh) {
+    for (IStopwatch watch : StopwatchFactory.getStopwatches()) {
+      bh.consume(watch.toString());
+    }
+  }
+}
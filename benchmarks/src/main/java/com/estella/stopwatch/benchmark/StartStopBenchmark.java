@@ -0,0 +1,50 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchKind;
+
+/**
+ * Cost of a start()/stop() cycle on a thread's own stopwatch.  A restart
+ * resumes the final lap, so the lap history doesn't grow.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StartStopBenchmark {
+  private static final AtomicLong ids = new AtomicLong();
+
+  @Param({"SYNCHRONIZED", "LOCK_FREE", "STRIPED"})
+  public StopwatchKind kind;
+
+  private IStopwatch watch;
+
+  @Setup
+  public void createWatch() {
+    watch = StopwatchFactory.getStopwatch("startstop-" + ids.incrementAndGet(), kind);
+  }
+
+  @Benchmark
+  public void startStop() {
+    watch.start();
+    watch.stop();
+  }
+}
@@ -0,0 +1,62 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.LapSummary;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchTable;
+
+/**
+ * Cost of a short-lived stopwatch (create, start, lap, stop, read, release)
+ * in a StopwatchTable against a factory stopwatch.  A table handle is reused
+ * once released, so gc.alloc.rate.norm of the table should be zero apart
+ * from the LapSummary read back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StopwatchTableBenchmark {
+  private static final AtomicLong ids = new AtomicLong();
+
+  private final StopwatchTable table = new StopwatchTable("table-benchmark");
+
+  @Benchmark
+  @Threads(4)
+  public LapSummary table() {
+    int handle = table.create(null);
+    table.start(handle);
+    table.lap(handle);
+    table.stop(handle);
+    LapSummary laps = table.getLapSummary(handle);
+    table.release(handle);
+    return laps;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Object factory() {
+    IStopwatch watch = StopwatchFactory.getStopwatch("short-" + ids.incrementAndGet());
+    watch.start();
+    watch.lap();
+    watch.stop();
+    Object laps = watch.getLapTimes();
+    StopwatchFactory.releaseStopwatch(watch);
+    return laps;
+  }
+}
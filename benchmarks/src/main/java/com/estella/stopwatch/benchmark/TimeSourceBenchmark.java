@@ -0,0 +1,76 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.CachedTimeSource;
+import com.estella.stopwatch.impl.StopwatchConfig;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.SystemTimeSource;
+import com.estella.stopwatch.impl.TimeSource;
+
+/**
+ * Cost of one reading from each TimeSource, and of a lap() on a stopwatch
+ * that reads it.  Each source's error bound is printed at the end of a trial
+ * so it can be weighed against its cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeSourceBenchmark {
+  private static final AtomicLong ids = new AtomicLong();
+
+  @Param({"SYSTEM", "CACHED_1MS"})
+  public String source;
+
+  private TimeSource timeSource;
+  private IStopwatch watch;
+
+  @Setup(Level.Trial)
+  public void createTimeSource() {
+    if ("CACHED_1MS".equals(source)) {
+      timeSource = new CachedTimeSource(1, TimeUnit.MILLISECONDS);
+    } else {
+      timeSource = SystemTimeSource.INSTANCE;
+    }
+    watch = StopwatchFactory.getStopwatch("timesource-" + ids.incrementAndGet(),
+        StopwatchConfig.defaults().withTimeSource(timeSource).withLapRetention(1024));
+    watch.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void closeTimeSource() {
+    System.out.println(timeSource + " error bound: " + timeSource.getErrorBoundNanos() + " ns");
+    if (timeSource instanceof CachedTimeSource) {
+      ((CachedTimeSource) timeSource).close();
+    }
+  }
+
+  @Benchmark
+  public long nanoTime() {
+    return timeSource.nanoTime();
+  }
+
+  @Benchmark
+  public void lap() {
+    watch.lap();
+  }
+}
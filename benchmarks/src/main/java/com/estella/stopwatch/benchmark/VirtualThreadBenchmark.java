@@ -0,0 +1,111 @@
+package com.estella.stopwatch.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.estella.stopwatch.api.IStopwatch;
+import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchKind;
+
+/**
+ * Time for 1k to 100k virtual threads to each time 1 ms of blocking work
+ * through the factory: create a watch, start it, park, lap, stop and
+ * release it, while also timing the work as an interval on one watch shared
+ * by every thread.  Neither kind's own locks are monitors, so the time
+ * should grow far slower than the thread count.
+ *
+ * The path is not monitor-free, though: registering and releasing go
+ * through ConcurrentHashMap, whose putIfAbsent and remove lock the bin head
+ * with synchronized.  On JDK 21 a virtual thread blocked entering that
+ * monitor pins its carrier.  The bins are held only briefly and the holder
+ * never parks, so -Djdk.tracePinnedThreads=short (set below), which only
+ * reports parking while pinned, stays quiet even when this happens; it
+ * shows up as carrier threads stalled under contention, not in the trace.
+ *
+ * Needs a JDK with virtual threads (21 or later) to run; the executor is
+ * looked up reflectively so the module still builds for Java 8.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djdk.tracePinnedThreads=short"})
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+  private static final AtomicLong ids = new AtomicLong();
+  private static final long WORK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Param({"SYNCHRONIZED", "LOCK_FREE"})
+  public StopwatchKind kind;
+
+  @Param({"1000", "10000", "100000"})
+  public int threads;
+
+  private ExecutorService executor;
+  private IStopwatch shared;
+
+  @Setup(Level.Trial)
+  public void createExecutor() throws Exception {
+    try {
+      executor = (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException("Virtual threads need JDK 21 or later", e);
+    }
+    shared = StopwatchFactory.getStopwatch("virtual-shared-" + ids.incrementAndGet(), kind);
+  }
+
+  @Setup(Level.Iteration)
+  public void resetShared() {
+    shared.reset();
+  }
+
+  @TearDown(Level.Trial)
+  public void shutdown() {
+    executor.shutdown();
+    StopwatchFactory.releaseStopwatch(shared);
+  }
+
+  @Benchmark
+  public void timeWork() throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            long token = shared.begin();
+            IStopwatch watch = StopwatchFactory.getStopwatch("virtual-" + ids.incrementAndGet(), kind);
+            watch.start();
+            LockSupport.parkNanos(WORK_NANOS);
+            watch.lap();
+            watch.stop();
+            StopwatchFactory.releaseStopwatch(watch);
+            shared.end(token);
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+    done.await();
+  }
+}
@@ -37,6 +37,24 @@ public interface IStopwatch {
 	 */
 	public void stop();
 
+	/**
+	 * Begins timing an interval, independently of start(), lap() and stop().
+	 * Any number of intervals may be open at once, from any number of threads,
+	 * so concurrent calls to the same code can all be timed by one stopwatch.
+	 * Nothing is stored until end() is called.
+	 * @return a token to pass to end(); a timestamp, so it costs no allocation.
+	 */
+	public long begin();
+
+	/**
+	 * Ends an interval begun with begin() and stores its length as a lap,
+	 * whether or not the stopwatch is running.  On a stopped stopwatch this
+	 * closes the final lap, so a later start() begins a new lap.
+	 * @param token the value returned by this stopwatch's begin()
+	 * @throws IllegalArgumentException if <code>token</code> is later than now.
+	 */
+	public void end(long token);
+
 	/**
 	 * Resets the stopwatch.  If the stopwatch is running, this method stops the
 	 * watch and resets it.  This also clears all recorded laps.
@@ -49,4 +67,19 @@ public interface IStopwatch {
 	 * @return a list of recorded lap times or an empty list if no times are recorded.
 	 */
 	public List<Long> getLapTimes();
+
+	/**
+	 * Appends the lap times recorded since lap number <code>sequence</code> to
+	 * <code>laps</code>.  Laps are numbered from 0 when the stopwatch is created
+	 * and the numbers keep counting up across resets, so an exporter can pass
+	 * the returned number back in on its next call and only pay for the laps
+	 * recorded in between.  Safe to call while other threads call lap().
+	 * Laps that were reset or no longer kept by the stopwatch are skipped.  The
+	 * final lap of a stopped stopwatch is held back, since a later start() may
+	 * continue it; it is returned, once, after a lap() or end() has finished it.
+	 * @param sequence the number returned by the previous call, or 0 the first time
+	 * @param laps the list the new lap times are added to
+	 * @return the lap number to pass to the next call.
+	 */
+	public long getLapTimesSince(long sequence, List<Long> laps);
 }
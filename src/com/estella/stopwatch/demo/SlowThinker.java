@@ -1,16 +1,32 @@
 package com.estella.stopwatch.demo;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
+import com.estella.stopwatch.impl.LapHistogram;
 import com.estella.stopwatch.impl.StopwatchFactory;
+import com.estella.stopwatch.impl.StopwatchKind;
 import com.estella.stopwatch.api.IStopwatch;
 
 /**
  * This is a simple program that demonstrates just some of
- * the functionality of the IStopwatch interface and StopwatchFactory class.
- * Just because this class runs successfully does not mean that the assignment is
- * complete.  It is up to you to implement the methods of IStopwatch and StopwatchFactory
+ * the functionality of the IStopwatch interface and StopwatchFactory class,
+ * and doubles as a load generator for reproducing contention on the
+ * stopwatches.
+ *
+ * Each thread starts a stopwatch, laps it until it has recorded its laps or
+ * the duration is up, thinking between laps, and stops it.  At the end the
+ * program logs the laps per second, percentiles of how long each lap() call
+ * took and how many garbage collections ran.  With no arguments it runs the
+ * original demo: one thread lapping 10 times a second apart.
  *
  */
 public class SlowThinker {
@@ -19,39 +35,270 @@ public class SlowThinker {
 	private static final Logger logger =
 	    Logger.getLogger("com.estella.stopwatch.demo.SlowThinker");
 
+	private static final List<String> VALUE_OPTIONS =
+	    Arrays.asList("--threads", "--laps", "--think-ms", "--duration-s", "--kind");
+	/** Slots of the lap() call recorder; threads pick one by their number. */
+	private static final int HISTOGRAM_SLOTS = 64;
+	private static final String USAGE = "Usage: SlowThinker [threads] [--threads N] [--virtual]"
+	    + " [--laps N] [--think-ms MS] [--duration-s S] [--shared] [--kind KIND]";
+
+	private int threads = 1;
+	private boolean virtual = false;
+	/** Laps per thread, or 0 to lap until the duration is up; 0 by default when a duration is given. */
+	private long laps = 10;
+	private long thinkNanos = TimeUnit.SECONDS.toNanos(1);
+	/** How long to run, or 0 to run until every thread recorded its laps. */
+	private long durationNanos = 0;
+	private boolean shared = false;
+	private StopwatchKind kind = StopwatchKind.SYNCHRONIZED;
+
 	/**
 	 * Run the SlowThinker demo application
-	 * @param args a single argument specifying the number of threads
+	 * @param args a single argument specifying the number of threads, or the
+	 *     options listed in USAGE
 	 */
 	public static void main(String[] args) {
 		SlowThinker thinker = new SlowThinker();
-		thinker.go();
+		try {
+		  thinker.parse(args);
+		} catch (IllegalArgumentException e) {
+		  logger.severe(e.getMessage() + "\n" + USAGE);
+		  return;
+		}
+		try {
+		  thinker.go();
+		} catch (InterruptedException ie) {
+		  Thread.currentThread().interrupt();
+		}
+	}
+
+	private void parse(String[] args) {
+		boolean lapsGiven = false;
+		for (int i = 0; i < args.length; i++) {
+		  String arg = args[i];
+		  if (arg.equals("--virtual")) {
+		    virtual = true;
+		  } else if (arg.equals("--shared")) {
+		    shared = true;
+		  } else if (!arg.startsWith("--") && i == 0) {
+		    threads = (int) number(arg, arg);
+		  } else if (!VALUE_OPTIONS.contains(arg)) {
+		    throw new IllegalArgumentException("Error: unknown option " + arg + ".");
+		  } else if (i + 1 == args.length) {
+		    throw new IllegalArgumentException("Error: " + arg + " needs a value.");
+		  } else {
+		    String value = args[++i];
+		    if (arg.equals("--threads")) {
+		      threads = (int) number(arg, value);
+		    } else if (arg.equals("--laps")) {
+		      laps = number(arg, value);
+		      lapsGiven = true;
+		    } else if (arg.equals("--think-ms")) {
+		      thinkNanos = (long) (TimeUnit.MILLISECONDS.toNanos(1) * decimal(arg, value));
+		    } else if (arg.equals("--duration-s")) {
+		      durationNanos = (long) (TimeUnit.SECONDS.toNanos(1) * decimal(arg, value));
+		    } else if (arg.equals("--kind")) {
+		      try {
+		        kind = StopwatchKind.valueOf(value);
+		      } catch (IllegalArgumentException e) {
+		        throw new IllegalArgumentException("Error: unknown kind " + value + ".");
+		      }
+		    }
+		  }
+		}
+		if (durationNanos > 0 && !lapsGiven) {
+		  laps = 0;
+		}
+		if (threads <= 0) {
+		  throw new IllegalArgumentException("Error: threads must be positive.");
+		}
+		if (laps == 0 && durationNanos == 0) {
+		  throw new IllegalArgumentException("Error: give a number of laps or a duration.");
+		}
+	}
+
+	private static long number(String option, String value) {
+		try {
+		  long n = Long.parseLong(value);
+		  if (n >= 0) {
+		    return n;
+		  }
+		} catch (NumberFormatException e) { /* reported below */ }
+		throw new IllegalArgumentException("Error: " + option + " needs a whole number, not " + value + ".");
+	}
+
+	private static double decimal(String option, String value) {
+		try {
+		  double d = Double.parseDouble(value);
+		  if (d >= 0) {
+		    return d;
+		  }
+		} catch (NumberFormatException e) { /* reported below */ }
+		throw new IllegalArgumentException("Error: " + option + " needs a number, not " + value + ".");
+	}
+
+	/**
+	 * Creates a platform thread, or a virtual thread if asked to.  Virtual
+	 * threads are created reflectively so that the demo still builds for Java 8.
+	 */
+	private Thread newThread(Runnable runnable) {
+		if (!virtual) {
+		  return new Thread(runnable);
+		}
+		try {
+		  Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+		  return (Thread) Class.forName("java.lang.Thread$Builder")
+		      .getMethod("unstarted", Runnable.class).invoke(builder, runnable);
+		} catch (ReflectiveOperationException e) {
+		  throw new IllegalStateException("Virtual threads need JDK 21 or later", e);
+		}
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+		  count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+		  millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	/**
+	 * Records how long lap() calls took without a lock, so that a thread
+	 * parked or descheduled mid-record never holds up the others.  A thread
+	 * takes a histogram out of a slot, records into it alone and puts it back;
+	 * if its slot is empty because another thread is recording, it tries the
+	 * next slots and makes a new histogram only when they are all taken.  So
+	 * there are about as many histograms as threads recording at the same
+	 * instant, not one per thread, which matters with 100k virtual threads.
+	 */
+	private static final class LapCallRecorder {
+		private final AtomicReferenceArray<LapHistogram> slots =
+		    new AtomicReferenceArray<>(HISTOGRAM_SLOTS);
+		/** Histograms that found every slot full when put back. */
+		private final ConcurrentLinkedQueue<LapHistogram> spares = new ConcurrentLinkedQueue<>();
+
+		void record(int thread, long took) {
+		  int home = thread % HISTOGRAM_SLOTS;
+		  LapHistogram histogram = null;
+		  for (int i = 0; i < HISTOGRAM_SLOTS && histogram == null; i++) {
+		    histogram = slots.getAndSet((home + i) % HISTOGRAM_SLOTS, null);
+		  }
+		  if (histogram == null) {
+		    histogram = spares.poll();
+		  }
+		  if (histogram == null) {
+		    histogram = new LapHistogram();
+		  }
+		  histogram.record(took);
+		  for (int i = 0; i < HISTOGRAM_SLOTS; i++) {
+		    if (slots.compareAndSet((home + i) % HISTOGRAM_SLOTS, null, histogram)) {
+		      return;
+		    }
+		  }
+		  spares.add(histogram);
+		}
+
+		/**
+		 * Merges the histograms; call it once the recording threads have joined.
+		 */
+		LapHistogram merge() {
+		  LapHistogram merged = new LapHistogram();
+		  for (int i = 0; i < HISTOGRAM_SLOTS; i++) {
+		    LapHistogram histogram = slots.get(i);
+		    if (histogram != null) {
+		      merged.add(histogram);
+		    }
+		  }
+		  for (LapHistogram histogram : spares) {
+		    merged.add(histogram);
+		  }
+		  return merged;
+		}
 	}
 
 	/**
-	 * Starts the slowthinker object
-	 * It will get a stopwatch, set a number of lap times, stop the watch
-	 * and then print out all the lap times
+	 * Starts the thinker threads and waits for them
+	 * Each gets a stopwatch (or shares one), sets a number of lap times, stops
+	 * the watch, and then the totals are logged.  If the threads only record a
+	 * few laps, the lap times of every watch are logged as well.
 	 *
 	 */
-	private void go() {
-		Runnable runnable = new Runnable() {
-			public void run() {
-				IStopwatch stopwatch = StopwatchFactory.getStopwatch(
-				    "ID " + Thread.currentThread().getId());
-			  stopwatch.start();
-				for (int i = 0; i < 10; i++) {
-					try {
-						Thread.sleep(1000);
-					} catch (InterruptedException ie) { /* safely ignore this */ }
-					stopwatch.lap();
-				}
-				stopwatch.stop();
-				List<Long> times = stopwatch.getLapTimes();
-				logger.info(times.toString());
-			}
-		};
-		Thread thinkerThread = new Thread(runnable);
-		thinkerThread.start();
+	private void go() throws InterruptedException {
+		final IStopwatch sharedWatch = shared
+		    ? StopwatchFactory.getStopwatch("SlowThinker " + System.nanoTime(), kind) : null;
+		final long deadline = durationNanos > 0 ? System.nanoTime() + durationNanos : Long.MAX_VALUE;
+		final LapCallRecorder recorder = new LapCallRecorder();
+		final List<IStopwatch> watches = new ArrayList<>();
+		List<Thread> thinkers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+		  final int thread = t;
+		  final IStopwatch stopwatch = shared ? sharedWatch
+		      : StopwatchFactory.getStopwatch("ID " + System.nanoTime() + "-" + t, kind);
+		  if (!shared) {
+		    watches.add(stopwatch);
+		  }
+		  thinkers.add(newThread(new Runnable() {
+		    public void run() {
+		      if (!shared) {
+		        stopwatch.start();
+		      }
+		      for (long i = 0; (laps == 0 || i < laps) && System.nanoTime() < deadline; i++) {
+		        if (thinkNanos > 0) {
+		          LockSupport.parkNanos(thinkNanos);
+		        }
+		        long before = System.nanoTime();
+		        stopwatch.lap();
+		        recorder.record(thread, System.nanoTime() - before);
+		      }
+		      if (!shared) {
+		        stopwatch.stop();
+		      }
+		    }
+		  }));
+		}
+		if (shared) {
+		  sharedWatch.start();
+		  watches.add(sharedWatch);
+		}
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+		long start = System.nanoTime();
+		for (Thread thinker : thinkers) {
+		  thinker.start();
+		}
+		for (Thread thinker : thinkers) {
+		  thinker.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (shared) {
+		  sharedWatch.stop();
+		}
+
+		LapHistogram lapCalls = recorder.merge();
+		if (lapCalls.getCount() <= 100) {
+		  for (IStopwatch stopwatch : watches) {
+		    List<Long> times = stopwatch.getLapTimes();
+		    logger.info(stopwatch.getId() + " " + times.toString());
+		  }
+		}
+		logger.info(threads + (virtual ? " virtual" : " platform") + " threads, "
+		    + (shared ? "one shared " : "private ") + kind + " stopwatch"
+		    + (shared ? "" : "es") + ", " + lapCalls.getCount() + " laps in "
+		    + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+		logger.info(String.format("%.0f laps/sec", lapCalls.getCount() * 1e9 / elapsed));
+		logger.info("lap() call: " + lapCalls);
+		logger.info((gcCount() - gcCountBefore) + " GCs, "
+		    + (gcMillis() - gcMillisBefore) + " ms in GC");
+		for (IStopwatch stopwatch : watches) {
+		  StopwatchFactory.releaseStopwatch(stopwatch);
+		}
 	}
 }
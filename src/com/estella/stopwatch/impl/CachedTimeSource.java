@@ -0,0 +1,95 @@
+package com.estella.stopwatch.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A TimeSource that reads System.nanoTime() on a background thread once per
+ * tick and hands out the cached value, so reading the time is just a volatile
+ * read.  A value read from it is behind the real time by at most one tick
+ * plus however long the ticker thread waits to be scheduled, so each lap can
+ * be off by that much; use a tick well below the precision you need (a
+ * millisecond tick suits lap times reported in milliseconds).
+ *
+ * The ticker records how late it wakes up, so getErrorBoundNanos() reports
+ * the tick plus the worst scheduling delay seen so far.
+ *
+ * The ticker is a daemon thread; call close() to stop it when the time
+ * source is no longer needed.
+ */
+public class CachedTimeSource implements TimeSource, AutoCloseable {
+  private final long tickNanos;
+  private final Thread ticker;
+  private volatile long time;
+  private volatile long maxLateNanos;
+  private volatile boolean closed;
+
+  /**
+   * Starts a time source that is updated every <code>tick</code>.
+   * @throws IllegalArgumentException if <code>tick</code> isn't positive or
+   *     <code>unit</code> is null.
+   */
+  public CachedTimeSource(long tick, TimeUnit unit) {
+    if (tick <= 0 || unit == null) {
+      throw new IllegalArgumentException("Error: tick must be a positive time.");
+    }
+    tickNanos = unit.toNanos(tick);
+    time = System.nanoTime();
+    ticker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        long previous = System.nanoTime();
+        time = previous;
+        while (!closed) {
+          LockSupport.parkNanos(tickNanos);
+          long now = System.nanoTime();
+          time = now;
+          long late = now - previous - tickNanos;
+          if (late > maxLateNanos) {
+            maxLateNanos = late;
+          }
+          previous = now;
+        }
+      }
+    }, "stopwatch-cached-time-source");
+    ticker.setDaemon(true);
+    ticker.start();
+  }
+
+  /**
+   * Returns the time the ticker thread read last.
+   */
+  @Override
+  public long nanoTime() {
+    return time;
+  }
+
+  /**
+   * Returns the tick plus the longest the ticker has overslept so far.
+   */
+  @Override
+  public long getErrorBoundNanos() {
+    return tickNanos + maxLateNanos;
+  }
+
+  /**
+   * Returns the configured tick in nanoseconds.
+   */
+  public long getTickNanos() {
+    return tickNanos;
+  }
+
+  /**
+   * Stops the ticker thread.  The time source keeps returning the last value.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(ticker);
+  }
+
+  @Override
+  public String toString() {
+    return "CachedTimeSource [tick=" + tickNanos + " ns]";
+  }
+}
@@ -0,0 +1,154 @@
+package com.estella.stopwatch.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the intervals a stopwatch is timing with begin() and end(): how
+ * many are in flight now, the most that were ever in flight at once, and
+ * how many completed and how long they took since the stopwatch was created
+ * or reset.  From those it derives the arrival rate and, by Little's law
+ * (L = lambda * W), the mean number in flight.  Every read is O(1) and
+ * never touches the stopwatch's laps.
+ *
+ * The in-flight count, the completion count and the busy time are striped
+ * LongAdders, so begin() and end() on many threads don't contend on one
+ * counter.  An exact peak would need the exact in-flight count at every
+ * begin(), which is that one contended counter again.  Instead begin()
+ * reads the sum, which costs a read of every stripe, and raises the peak
+ * only while the peak is below SAMPLE_ALL_BELOW and on one begin() in
+ * SAMPLE_RATE after that.  So the peak is exact at low concurrency; at high
+ * concurrency it is a lower bound that may miss short bursts.
+ */
+public class ConcurrencyGauge {
+  /** Every begin() updates the peak while it is below this. */
+  private static final long SAMPLE_ALL_BELOW = 16;
+  /** After that, one begin() in this many updates it; a power of two. */
+  private static final int SAMPLE_RATE = 8;
+
+  private final TimeSource timeSource;
+  private final LongAdder inFlight;
+  private final AtomicLong peak;
+  private final LongAdder completed;
+  private final LongAdder busyNanos;
+  private volatile long since;
+
+  ConcurrencyGauge(TimeSource timeSource) {
+    this.timeSource = timeSource;
+    inFlight = new LongAdder();
+    peak = new AtomicLong();
+    completed = new LongAdder();
+    busyNanos = new LongAdder();
+    since = timeSource.nanoTime();
+  }
+
+  void begin() {
+    inFlight.increment();
+    long p = peak.get();
+    if (p < SAMPLE_ALL_BELOW
+        || (ThreadLocalRandom.current().nextInt() & (SAMPLE_RATE - 1)) == 0) {
+      raisePeak(inFlight.sum(), p);
+    }
+  }
+
+  private void raisePeak(long n, long p) {
+    while (n > p && !peak.compareAndSet(p, n)) {
+      p = peak.get();
+    }
+  }
+
+  void end(long intervalNanos) {
+    inFlight.decrement();
+    completed.increment();
+    busyNanos.add(intervalNanos);
+  }
+
+  /**
+   * Takes back a begin() whose interval was never ended, such as one whose
+   * end() rejected its token, so it doesn't stay in flight for good.
+   */
+  void cancel() {
+    inFlight.decrement();
+  }
+
+  /**
+   * Starts a new measurement window.  Intervals still in flight stay counted
+   * and become the new peak.
+   */
+  void reset() {
+    completed.reset();
+    busyNanos.reset();
+    peak.set(Math.max(0, inFlight.sum()));
+    since = timeSource.nanoTime();
+  }
+
+  /**
+   * Returns the number of intervals begun but not yet ended.
+   */
+  public long getInFlight() {
+    return Math.max(0, inFlight.sum());
+  }
+
+  /**
+   * Returns the most intervals that were in flight at once since the last
+   * reset.  Once the peak reaches SAMPLE_ALL_BELOW this is sampled, so it
+   * may be lower than the true peak.
+   */
+  public long getPeakInFlight() {
+    long n = inFlight.sum();
+    raisePeak(n, peak.get());
+    return peak.get();
+  }
+
+  /**
+   * Returns the number of intervals ended since the last reset.
+   */
+  public long getCompleted() {
+    return completed.sum();
+  }
+
+  /**
+   * Returns the time since the stopwatch was created or last reset, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return timeSource.nanoTime() - since;
+  }
+
+  /**
+   * Returns the number of intervals ended per second since the last reset.
+   */
+  public double getThroughput() {
+    long elapsed = getElapsedNanos();
+    return elapsed <= 0 ? 0 : completed.sum() * 1e9 / elapsed;
+  }
+
+  /**
+   * Returns the mean length of the ended intervals in nanoseconds, or 0 if
+   * none have ended.
+   */
+  public double getMeanLatencyNanos() {
+    long n = completed.sum();
+    return n == 0 ? 0 : (double) busyNanos.sum() / n;
+  }
+
+  /**
+   * Returns the mean number of intervals in flight since the last reset, by
+   * Little's law: throughput times mean latency, i.e. the time spent in
+   * ended intervals divided by the elapsed time.  Intervals still in flight
+   * are not counted until they end.
+   */
+  public double getMeanInFlight() {
+    long elapsed = getElapsedNanos();
+    return elapsed <= 0 ? 0 : (double) busyNanos.sum() / elapsed;
+  }
+
+  @Override
+  public String toString() {
+    return "inFlight=" + getInFlight() + ", peak=" + getPeakInFlight()
+        + ", completed=" + getCompleted()
+        + ", throughput=" + String.format("%.2f", getThroughput())
+        + "/s, meanLatency=" + (long) getMeanLatencyNanos()
+        + " ns, meanInFlight=" + String.format("%.2f", getMeanInFlight());
+  }
+}
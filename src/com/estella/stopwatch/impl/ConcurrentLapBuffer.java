@@ -0,0 +1,108 @@
+package com.estella.stopwatch.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free, append-only buffer of lap times.  Writers reserve a slot with
+ * a fetch-and-add on the size and then publish the lap into it.  The slots
+ * live in the same doubling chunks as {@link LapBuffer}; the chunk directory
+ * is allocated up front and the chunks themselves are installed with a CAS,
+ * so nothing is ever copied or locked while the buffer grows.
+ *
+ * Lap times must not be negative.  A slot holds <code>lapTime + 1</code> once
+ * published, so readers can tell a reserved slot from a written one.
+ */
+class ConcurrentLapBuffer {
+  private final AtomicReferenceArray<AtomicLongArray> chunks;
+  private final AtomicInteger reserved;
+  private final long firstLapNumber;
+
+  ConcurrentLapBuffer() {
+    this(0);
+  }
+
+  /**
+   * Constructs an empty buffer whose first lap is lap number <code>firstLapNumber</code>.
+   */
+  ConcurrentLapBuffer(long firstLapNumber) {
+    this.firstLapNumber = firstLapNumber;
+    chunks = new AtomicReferenceArray<>(LapBuffer.MAX_CHUNKS);
+    chunks.set(0, new AtomicLongArray(LapBuffer.chunkLength(0)));
+    reserved = new AtomicInteger();
+  }
+
+  private AtomicLongArray chunkFor(int chunk) {
+    AtomicLongArray c = chunks.get(chunk);
+    if (c == null) {
+      AtomicLongArray created = new AtomicLongArray(LapBuffer.chunkLength(chunk));
+      if (chunks.compareAndSet(chunk, null, created)) {
+        c = created;
+      } else {
+        c = chunks.get(chunk);
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Appends a lap time.  Safe to call from any number of threads at once.
+   * @throws IllegalStateException if the buffer already holds LapBuffer.CAPACITY laps.
+   */
+  void add(long lapTime) {
+    int index = reserved.getAndIncrement();
+    if (index >= LapBuffer.CAPACITY || index < 0) {
+      // Keep the count from creeping towards overflow while writers keep failing.
+      reserved.set(LapBuffer.CAPACITY);
+      throw new IllegalStateException("Sorry, the lap buffer is full.");
+    }
+    int chunk = LapBuffer.chunkOf(index);
+    chunkFor(chunk).lazySet(LapBuffer.offsetOf(index, chunk), lapTime + 1);
+  }
+
+  /**
+   * Returns the number of slots handed out so far.  Slots below this count
+   * that are still being written are waited for by the readers.
+   */
+  int size() {
+    int n = reserved.get();
+    return n > LapBuffer.CAPACITY || n < 0 ? LapBuffer.CAPACITY : n;
+  }
+
+  /**
+   * Returns the lap number of the first lap in this buffer.
+   */
+  long firstLapNumber() {
+    return firstLapNumber;
+  }
+
+  /**
+   * Returns the lap time at <code>index</code>, waiting for its writer if the
+   * slot was reserved but not published yet.
+   */
+  long get(int index) {
+    int chunk = LapBuffer.chunkOf(index);
+    int offset = LapBuffer.offsetOf(index, chunk);
+    AtomicLongArray c;
+    while ((c = chunks.get(chunk)) == null) {
+      Thread.yield();
+    }
+    long v;
+    while ((v = c.get(offset)) == 0) {
+      Thread.yield();
+    }
+    return v - 1;
+  }
+
+  /**
+   * Returns a copy of the laps recorded so far.
+   */
+  long[] toArray() {
+    long[] result = new long[size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = get(i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,16 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * Decides which stopwatches StopwatchFactory drops when it holds more
+ * stopwatches than its capacity allows.
+ */
+public enum EvictionPolicy {
+  /**
+   * Drop the stopwatches that were last started, lapped, stopped, reset or
+   * ended an interval longest ago, running or not.  A running stopwatch that
+   * keeps lapping stays, and so does one timed only with begin() and end().
+   */
+  LEAST_RECENTLY_USED,
+  /** Drop only stopped stopwatches, the one stopped longest ago first. */
+  OLDEST_STOPPED_FIRST
+}
@@ -0,0 +1,156 @@
+package com.estella.stopwatch.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The running totals of every lap recorded by a group of stopwatches that
+ * share an aggregate key (see {@link StopwatchConfig#withAggregate(String)}).
+ * Each lap is added as it is recorded, so reading a group costs the same
+ * however many stopwatches and laps feed it.
+ *
+ * The laps are counted in striped histograms picked by the recording
+ * thread, each with its own lock, so the stopwatches of a busy group don't
+ * all queue on one lock while holding their own.  A stripe's histogram is
+ * only allocated once a thread records into it.  Reads merge the stripes.
+ *
+ * A stopwatch's reset does not take its laps out of the aggregate; the
+ * aggregate only forgets laps when it is cleared.
+ */
+public class LapAggregate {
+  private static final int STRIPE_COUNT = stripeCount();
+
+  private final String key;
+  private final AtomicReferenceArray<Stripe> stripes;
+
+  private static final class Stripe {
+    final ReentrantLock lock = new ReentrantLock();
+    final LapHistogram histogram = new LapHistogram();
+  }
+
+  private static int stripeCount() {
+    int n = 1;
+    while (n < Runtime.getRuntime().availableProcessors() && n < 16) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  LapAggregate(String key) {
+    this.key = key;
+    stripes = new AtomicReferenceArray<>(STRIPE_COUNT);
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  private Stripe stripeForCurrentThread() {
+    long h = Thread.currentThread().getId();
+    h ^= h >>> 16;
+    int i = (int) h & (STRIPE_COUNT - 1);
+    Stripe stripe = stripes.get(i);
+    if (stripe == null) {
+      Stripe created = new Stripe();
+      stripe = stripes.compareAndSet(i, null, created) ? created : stripes.get(i);
+    }
+    return stripe;
+  }
+
+  void record(long lapTime) {
+    Stripe stripe = stripeForCurrentThread();
+    stripe.lock.lock();
+    try {
+      stripe.histogram.record(lapTime);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /**
+   * Takes back a lap that a stopwatch resumed with start().  The lap is
+   * usually in the calling thread's stripe; if another thread recorded it,
+   * the other stripes are searched for it.
+   */
+  void remove(long lapTime) {
+    Stripe own = stripeForCurrentThread();
+    if (remove(own, lapTime)) {
+      return;
+    }
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      Stripe stripe = stripes.get(i);
+      if (stripe != null && stripe != own && remove(stripe, lapTime)) {
+        return;
+      }
+    }
+  }
+
+  private static boolean remove(Stripe stripe, long lapTime) {
+    stripe.lock.lock();
+    try {
+      return stripe.histogram.remove(lapTime);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the count, sum, min and max of the recorded laps.
+   */
+  public LapSummary getSummary() {
+    LapSummary summary = LapSummary.EMPTY;
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      Stripe stripe = stripes.get(i);
+      if (stripe != null) {
+        stripe.lock.lock();
+        try {
+          summary = summary.plus(LapSummary.of(stripe.histogram));
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+    }
+    return summary;
+  }
+
+  /**
+   * Returns a copy of the histogram of the recorded laps.
+   */
+  public LapHistogram getHistogram() {
+    LapHistogram merged = new LapHistogram();
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      Stripe stripe = stripes.get(i);
+      if (stripe != null) {
+        stripe.lock.lock();
+        try {
+          merged.add(stripe.histogram);
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Forgets every recorded lap.
+   */
+  public void clear() {
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      Stripe stripe = stripes.get(i);
+      if (stripe != null) {
+        stripe.lock.lock();
+        try {
+          stripe.histogram.clear();
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return key + " - " + getHistogram();
+  }
+}
@@ -0,0 +1,158 @@
+package com.estella.stopwatch.impl;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of primitive lap times.  The laps are kept in a fixed
+ * directory of chunks whose sizes double (32, 64, 128, ...), so growing the
+ * buffer only allocates the next chunk and never copies the recorded history.
+ * Chunks are kept when the buffer is cleared, so a reused buffer does not
+ * allocate again until it outgrows its previous size.
+ *
+ * This class is not thread-safe; callers guard it with their own lock.
+ */
+class LapBuffer implements LapStore {
+  /** log2 of the size of the first chunk. */
+  static final int FIRST_CHUNK_BITS = 5;
+  /**
+   * Number of chunks.  The last one holds 1 << 30 laps; one more would need
+   * an array of 1 << 31, which doesn't fit in an int.
+   */
+  static final int MAX_CHUNKS = 31 - FIRST_CHUNK_BITS;
+  /** The most laps a buffer can hold: the sum of all chunk lengths. */
+  static final int CAPACITY = (int) ((1L << 31) - (1L << FIRST_CHUNK_BITS));
+
+  private final long[][] chunks;
+  private int size;
+
+  LapBuffer() {
+    chunks = new long[MAX_CHUNKS][];
+    size = 0;
+  }
+
+  /**
+   * Returns the chunk that holds the lap at <code>index</code>.
+   */
+  static int chunkOf(int index) {
+    long j = (long) index + (1L << FIRST_CHUNK_BITS);
+    return (63 - Long.numberOfLeadingZeros(j)) - FIRST_CHUNK_BITS;
+  }
+
+  /**
+   * Returns the position of the lap at <code>index</code> within its chunk.
+   */
+  static int offsetOf(int index, int chunk) {
+    long j = (long) index + (1L << FIRST_CHUNK_BITS);
+    return (int) (j - (1L << (chunk + FIRST_CHUNK_BITS)));
+  }
+
+  /**
+   * Returns the number of laps the given chunk can hold.
+   */
+  static int chunkLength(int chunk) {
+    return 1 << (chunk + FIRST_CHUNK_BITS);
+  }
+
+  /**
+   * Appends a lap time to the end of the buffer.
+   * @throws IllegalStateException if the buffer already holds CAPACITY laps.
+   */
+  @Override
+  public void add(long lapTime) {
+    if (size == CAPACITY) {
+      throw new IllegalStateException("Sorry, the lap buffer is full.");
+    }
+    int chunk = chunkOf(size);
+    long[] c = chunks[chunk];
+    if (c == null) {
+      c = new long[chunkLength(chunk)];
+      chunks[chunk] = c;
+    }
+    c[offsetOf(size, chunk)] = lapTime;
+    size++;
+  }
+
+  /**
+   * Returns the lap time at <code>index</code>.
+   * @throws IndexOutOfBoundsException if <code>index</code> is not a recorded lap.
+   */
+  @Override
+  public long get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    int chunk = chunkOf(index);
+    return chunks[chunk][offsetOf(index, chunk)];
+  }
+
+  /**
+   * Removes and returns the last lap time.
+   * @throws IllegalStateException if the buffer is empty.
+   */
+  @Override
+  public long removeLast() {
+    if (size == 0) {
+      throw new IllegalStateException("Sorry, there are no laps to remove.");
+    }
+    long last = get(size - 1);
+    size--;
+    return last;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Forgets all recorded laps but keeps the allocated chunks for reuse.
+   */
+  @Override
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Copies <code>length</code> laps starting at <code>from</code> into
+   * <code>dest</code> starting at <code>destPos</code>.
+   * @throws IndexOutOfBoundsException if the range is outside the recorded laps
+   *     or doesn't fit into <code>dest</code>.
+   */
+  @Override
+  public void copyTo(int from, long[] dest, int destPos, int length) {
+    if (from < 0 || length < 0 || from > size - length
+        || destPos < 0 || destPos > dest.length - length) {
+      throw new IndexOutOfBoundsException("from: " + from + ", length: " + length
+          + ", size: " + size);
+    }
+    while (length > 0) {
+      int chunk = chunkOf(from);
+      int offset = offsetOf(from, chunk);
+      int n = Math.min(length, chunkLength(chunk) - offset);
+      System.arraycopy(chunks[chunk], offset, dest, destPos, n);
+      from += n;
+      destPos += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Returns a copy of all recorded laps.
+   */
+  @Override
+  public long[] toArray() {
+    long[] result = new long[size];
+    copyTo(0, result, 0, size);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
@@ -0,0 +1,29 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * Remembers how far a reader has got through a stopwatch's laps, so that
+ * repeated reads only copy the laps recorded since the previous one.  A
+ * cursor is meant to be kept and reused by one reader; it is not thread-safe.
+ *
+ * Laps are numbered the same way as for IStopwatch.getLapTimesSince, so a
+ * reset stopwatch just carries on from a higher lap number.
+ */
+public final class LapCursor {
+  long position;
+  long missed;
+
+  /**
+   * Returns the number of the next lap this cursor will read.
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns how many laps were reset or dropped by the stopwatch's lap
+   * retention before this cursor got to read them.
+   */
+  public long getMissed() {
+    return missed;
+  }
+}
@@ -0,0 +1,218 @@
+package com.estella.stopwatch.impl;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of lap times (in nanoseconds).  Values below 128
+ * are counted exactly; larger values fall into log-linear buckets, 64 per
+ * power of two, so a percentile is never off by more than 1/64 (about 1.6%)
+ * of the true value.  The histogram holds 3712 counters regardless of how
+ * many laps it has seen, and every query is independent of the lap count.
+ *
+ * This class is not thread-safe; a stopwatch updates its histogram under its
+ * own lock and hands out copies.
+ */
+public class LapHistogram {
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+  private static final int BUCKETS =
+      SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+  private final long[] counts;
+  private long count;
+  private long sum;
+  private long min;
+  private long max;
+
+  /**
+   * Constructs an empty histogram.
+   */
+  public LapHistogram() {
+    counts = new long[BUCKETS];
+    clear();
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+    int mantissa = (int) (value >>> shift);
+    return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (mantissa - HALF_SUB_BUCKETS);
+  }
+
+  static long lowestValueIn(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+    long mantissa = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+    return mantissa << shift;
+  }
+
+  static long highestValueIn(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+    return lowestValueIn(bucket) + (1L << shift) - 1;
+  }
+
+  /**
+   * Adds a lap time to the histogram.  Negative values are counted as 0.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts[bucketOf(value)]++;
+    count++;
+    sum += value;
+    if (value < min) {
+      min = value;
+    }
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  /**
+   * Takes back a lap time that was recorded earlier.  If it was the minimum or
+   * maximum, the new minimum or maximum is only known to bucket precision.
+   * @return false if no lap in <code>value</code>'s bucket was recorded.
+   */
+  boolean remove(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    int bucket = bucketOf(value);
+    if (counts[bucket] == 0) {
+      return false;
+    }
+    counts[bucket]--;
+    count--;
+    sum -= value;
+    if (count == 0) {
+      min = Long.MAX_VALUE;
+      max = 0;
+      return true;
+    }
+    if (value == min) {
+      int b = bucket;
+      while (counts[b] == 0) {
+        b++;
+      }
+      min = Math.max(min, lowestValueIn(b));
+    }
+    if (value == max) {
+      int b = bucket;
+      while (counts[b] == 0) {
+        b--;
+      }
+      max = Math.min(max, highestValueIn(b));
+    }
+    return true;
+  }
+
+  /**
+   * Adds every lap counted by <code>other</code> to this histogram.
+   */
+  public void add(LapHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Forgets every recorded lap.
+   */
+  public void clear() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  /**
+   * Returns a copy of this histogram.
+   */
+  public LapHistogram copy() {
+    LapHistogram copy = new LapHistogram();
+    copy.add(this);
+    return copy;
+  }
+
+  /**
+   * Returns the number of recorded laps.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the sum of the recorded laps in nanoseconds.
+   */
+  public long getSum() {
+    return sum;
+  }
+
+  /**
+   * Returns the shortest recorded lap in nanoseconds, or 0 if there are none.
+   */
+  public long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  /**
+   * Returns the longest recorded lap in nanoseconds, or 0 if there are none.
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Returns the mean lap in nanoseconds, or 0 if there are none.
+   */
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * Returns the lap time (in nanoseconds) that <code>percentile</code> percent
+   * of the recorded laps are shorter than or equal to, e.g. 99.9 for p999.
+   * The result is the upper bound of the bucket holding that lap, capped at
+   * the maximum.
+   * @return the percentile, or 0 if there are no laps.
+   * @throws IllegalArgumentException if <code>percentile</code> isn't between 0 and 100.
+   */
+  public long getPercentile(double percentile) {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("Error: percentile must be between 0 and 100.");
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(getMin(), Math.min(max, highestValueIn(i)));
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + count + ", min=" + getMin() + ", mean=" + (long) getMean()
+        + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99)
+        + ", p999=" + getPercentile(99.9) + ", max=" + max + " (ns)";
+  }
+}
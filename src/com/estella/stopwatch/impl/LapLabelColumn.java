@@ -0,0 +1,112 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * The label id of each lap, kept next to a {@link LapStore} of lap times so
+ * that index i holds the label of lap i.  Ids fit in a char (LapLabels
+ * defines at most 1 << 16 of them), so a lap's label costs two bytes rather
+ * than a long.  Like the lap times, the ids either grow in the doubling
+ * chunks of {@link LapBuffer} or fill a fixed ring like {@link LapRing}
+ * that pushes out the oldest id.
+ *
+ * This class is not thread-safe; callers guard it with their own lock.
+ */
+class LapLabelColumn {
+  /** The chunks of a growing column; null for a ring. */
+  private final char[][] chunks;
+  /** The ids of a ring; null for a growing column. */
+  private final char[] ring;
+  /** Position of the oldest kept id in the ring. */
+  private int head;
+  private int size;
+
+  /**
+   * Constructs a column that grows like a LapBuffer.
+   */
+  LapLabelColumn() {
+    chunks = new char[LapBuffer.MAX_CHUNKS][];
+    ring = null;
+  }
+
+  /**
+   * Constructs a column that keeps the last <code>capacity</code> ids, like a
+   * LapRing of the same capacity.
+   * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+   */
+  LapLabelColumn(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Error: capacity must be positive.");
+    }
+    chunks = null;
+    ring = new char[capacity];
+  }
+
+  /**
+   * Appends a label id.
+   * @throws IllegalStateException if a growing column already holds
+   *     LapBuffer.CAPACITY ids.
+   */
+  void add(int labelId) {
+    char id = (char) labelId;
+    if (ring != null) {
+      if (size == ring.length) {
+        ring[head] = id;
+        head = (head + 1) % ring.length;
+      } else {
+        ring[(head + size) % ring.length] = id;
+        size++;
+      }
+      return;
+    }
+    if (size == LapBuffer.CAPACITY) {
+      throw new IllegalStateException("Sorry, the lap buffer is full.");
+    }
+    int chunk = LapBuffer.chunkOf(size);
+    char[] c = chunks[chunk];
+    if (c == null) {
+      c = new char[LapBuffer.chunkLength(chunk)];
+      chunks[chunk] = c;
+    }
+    c[LapBuffer.offsetOf(size, chunk)] = id;
+    size++;
+  }
+
+  /**
+   * Returns the label id at <code>index</code>.
+   * @throws IndexOutOfBoundsException if <code>index</code> is not a kept id.
+   */
+  int get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    if (ring != null) {
+      return ring[(head + index) % ring.length];
+    }
+    int chunk = LapBuffer.chunkOf(index);
+    return chunks[chunk][LapBuffer.offsetOf(index, chunk)];
+  }
+
+  /**
+   * Removes and returns the last label id.
+   * @throws IllegalStateException if the column is empty.
+   */
+  int removeLast() {
+    if (size == 0) {
+      throw new IllegalStateException("Sorry, there are no laps to remove.");
+    }
+    int last = get(size - 1);
+    size--;
+    return last;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Forgets all ids but keeps the allocated chunks for reuse.
+   */
+  void clear() {
+    head = 0;
+    size = 0;
+  }
+}
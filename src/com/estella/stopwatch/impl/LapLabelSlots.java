@@ -0,0 +1,90 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * Maps the label ids one stopwatch has used to dense slots 0, 1, 2, ..., so
+ * the stopwatch's per-label totals only take room for its own labels rather
+ * than for every label LapLabels has defined.  Slots are handed out in order
+ * of first use and kept until the table is dropped.  The ids sit in a small
+ * open-addressing table that doubles when half full.
+ *
+ * This class is not thread-safe; callers guard it with their own lock.
+ */
+final class LapLabelSlots {
+  /** The label id in each table entry; NO_LABEL marks a free entry. */
+  private int[] ids;
+  /** The slot of the label id in the same entry. */
+  private int[] slots;
+  private int size;
+
+  LapLabelSlots() {
+    ids = new int[8];
+    slots = new int[8];
+  }
+
+  /**
+   * Returns how many labels have a slot.
+   */
+  int size() {
+    return size;
+  }
+
+  private static int entryOf(int labelId, int mask) {
+    int h = labelId * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * Returns the slot of <code>labelId</code>, or -1 if it has none.
+   */
+  int find(int labelId) {
+    int mask = ids.length - 1;
+    for (int i = entryOf(labelId, mask); ids[i] != LapLabels.NO_LABEL; i = (i + 1) & mask) {
+      if (ids[i] == labelId) {
+        return slots[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the slot of <code>labelId</code>, giving it the next free slot if
+   * it has none yet.
+   * @throws IllegalArgumentException if <code>labelId</code> is NO_LABEL.
+   */
+  int slotOf(int labelId) {
+    if (labelId == LapLabels.NO_LABEL) {
+      throw new IllegalArgumentException("Error: NO_LABEL has no slot.");
+    }
+    int slot = find(labelId);
+    if (slot >= 0) {
+      return slot;
+    }
+    if ((size + 1) * 2 > ids.length) {
+      grow();
+    }
+    put(labelId, size);
+    return size++;
+  }
+
+  private void put(int labelId, int slot) {
+    int mask = ids.length - 1;
+    int i = entryOf(labelId, mask);
+    while (ids[i] != LapLabels.NO_LABEL) {
+      i = (i + 1) & mask;
+    }
+    ids[i] = labelId;
+    slots[i] = slot;
+  }
+
+  private void grow() {
+    int[] oldIds = ids;
+    int[] oldSlots = slots;
+    ids = new int[oldIds.length * 2];
+    slots = new int[oldIds.length * 2];
+    for (int i = 0; i < oldIds.length; i++) {
+      if (oldIds[i] != LapLabels.NO_LABEL) {
+        put(oldIds[i], oldSlots[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.estella.stopwatch.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The JVM-wide dictionary of lap labels.  Each distinct label gets a small
+ * int id the first time it is used, so laps store the id instead of the
+ * string.  Id 0 means "no label".  Looking up a known label is a single
+ * ConcurrentHashMap read; only new labels take the lock.
+ *
+ * Labels are never forgotten, so they should come from a fixed set (stage
+ * names, not request ids).  At most MAX_LABELS labels can be defined.
+ */
+final class LapLabels {
+  static final int NO_LABEL = 0;
+  /** Every id fits in a char, which is how {@link LapLabelColumn} stores them. */
+  static final int MAX_LABELS = 1 << 16;
+
+  private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+  private static final ReentrantLock lock = new ReentrantLock();
+  private static volatile String[] names = new String[] { null };
+
+  private LapLabels() {
+  }
+
+  /**
+   * Returns the id of <code>label</code>, defining it if it is new.
+   * @throws IllegalArgumentException if <code>label</code> is empty or null.
+   * @throws IllegalStateException if MAX_LABELS labels are already defined.
+   */
+  static int idOf(String label) {
+    Integer id = ids.get(label == null ? "" : label);
+    if (id != null) {
+      return id;
+    }
+    if (label == null || label.trim().length() == 0) {
+      throw new IllegalArgumentException("Error: label cannot be empty or null.");
+    }
+    lock.lock();
+    try {
+      id = ids.get(label);
+      if (id == null) {
+        String[] current = names;
+        if (current.length == MAX_LABELS) {
+          throw new IllegalStateException("Sorry, too many lap labels are defined.");
+        }
+        String[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = label;
+        names = grown;
+        id = current.length;
+        ids.put(label, id);
+      }
+      return id;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the id of <code>label</code>, or -1 if it was never used.
+   */
+  static int find(String label) {
+    Integer id = label == null ? null : ids.get(label);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the label with the given id, or null for NO_LABEL.
+   */
+  static String nameOf(int id) {
+    return names[id];
+  }
+}
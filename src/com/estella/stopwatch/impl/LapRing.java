@@ -0,0 +1,130 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * A fixed-size ring of the most recent lap times.  Once the ring is full,
+ * each new lap pushes out the oldest one, which is folded into running
+ * count, sum, minimum and maximum, so the memory used never changes however
+ * many laps are recorded.
+ *
+ * This class is not thread-safe; callers guard it with their own lock.
+ */
+class LapRing implements LapStore {
+  private final long[] laps;
+  /** Position of the oldest kept lap. */
+  private int head;
+  private int size;
+  private long droppedCount;
+  private long droppedSum;
+  private long droppedMin;
+  private long droppedMax;
+
+  /**
+   * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+   */
+  LapRing(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Error: capacity must be positive.");
+    }
+    laps = new long[capacity];
+    clear();
+  }
+
+  int capacity() {
+    return laps.length;
+  }
+
+  @Override
+  public void add(long lapTime) {
+    if (size == laps.length) {
+      long dropped = laps[head];
+      droppedCount++;
+      droppedSum += dropped;
+      droppedMin = Math.min(droppedMin, dropped);
+      droppedMax = Math.max(droppedMax, dropped);
+      laps[head] = lapTime;
+      head = (head + 1) % laps.length;
+    } else {
+      laps[(head + size) % laps.length] = lapTime;
+      size++;
+    }
+  }
+
+  /**
+   * Removes and returns the most recent lap time.  Laps that were already
+   * pushed out of the ring don't come back.
+   * @throws IllegalStateException if the ring is empty.
+   */
+  @Override
+  public long removeLast() {
+    if (size == 0) {
+      throw new IllegalStateException("Sorry, there are no laps to remove.");
+    }
+    size--;
+    return laps[(head + size) % laps.length];
+  }
+
+  @Override
+  public long get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return laps[(head + index) % laps.length];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    head = 0;
+    size = 0;
+    droppedCount = 0;
+    droppedSum = 0;
+    droppedMin = Long.MAX_VALUE;
+    droppedMax = 0;
+  }
+
+  @Override
+  public void copyTo(int from, long[] dest, int destPos, int length) {
+    if (from < 0 || length < 0 || from > size - length
+        || destPos < 0 || destPos > dest.length - length) {
+      throw new IndexOutOfBoundsException("from: " + from + ", length: " + length
+          + ", size: " + size);
+    }
+    int start = (head + from) % laps.length;
+    int n = Math.min(length, laps.length - start);
+    System.arraycopy(laps, start, dest, destPos, n);
+    System.arraycopy(laps, 0, dest, destPos + n, length - n);
+  }
+
+  @Override
+  public long[] toArray() {
+    long[] result = new long[size];
+    copyTo(0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * Returns how many laps have been pushed out of the ring.
+   */
+  long droppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Returns the running aggregates of the laps pushed out of the ring.
+   */
+  LapSummary getDropped() {
+    if (droppedCount == 0) {
+      return LapSummary.EMPTY;
+    }
+    return new LapSummary(droppedCount, droppedSum, droppedMin, droppedMax);
+  }
+}
@@ -0,0 +1,47 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * Where a {@link Stopwatch} keeps its raw lap times.  Implementations are
+ * not thread-safe; the stopwatch calls them while holding its lock.
+ */
+interface LapStore {
+
+  /**
+   * Appends a lap time.
+   */
+  void add(long lapTime);
+
+  /**
+   * Removes and returns the most recent lap time.
+   * @throws IllegalStateException if there are no laps.
+   */
+  long removeLast();
+
+  /**
+   * Returns the lap time at <code>index</code>, counting from the oldest kept lap.
+   * @throws IndexOutOfBoundsException if <code>index</code> is not a kept lap.
+   */
+  long get(int index);
+
+  int size();
+
+  boolean isEmpty();
+
+  /**
+   * Forgets all laps.
+   */
+  void clear();
+
+  /**
+   * Copies <code>length</code> laps starting at <code>from</code> into
+   * <code>dest</code> starting at <code>destPos</code>.
+   * @throws IndexOutOfBoundsException if the range is outside the kept laps
+   *     or doesn't fit into <code>dest</code>.
+   */
+  void copyTo(int from, long[] dest, int destPos, int length);
+
+  /**
+   * Returns a copy of all kept laps, oldest first.
+   */
+  long[] toArray();
+}
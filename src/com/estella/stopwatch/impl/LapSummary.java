@@ -0,0 +1,119 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * An immutable count, sum, minimum and maximum of a set of lap times (in
+ * nanoseconds).
+ */
+public final class LapSummary {
+  /** The summary of no laps at all. */
+  public static final LapSummary EMPTY = new LapSummary(0, 0, 0, 0);
+
+  private final long count;
+  private final long sum;
+  private final long min;
+  private final long max;
+
+  public LapSummary(long count, long sum, long min, long max) {
+    this.count = count;
+    this.sum = sum;
+    this.min = min;
+    this.max = max;
+  }
+
+  /**
+   * Returns the summary of the given lap times.
+   */
+  static LapSummary of(long[] laps) {
+    if (laps.length == 0) {
+      return EMPTY;
+    }
+    long sum = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (long lap : laps) {
+      sum += lap;
+      min = Math.min(min, lap);
+      max = Math.max(max, lap);
+    }
+    return new LapSummary(laps.length, sum, min, max);
+  }
+
+  /**
+   * Returns the summary of the laps held by <code>store</code>.
+   */
+  static LapSummary of(LapStore store) {
+    int size = store.size();
+    if (size == 0) {
+      return EMPTY;
+    }
+    long sum = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      long lap = store.get(i);
+      sum += lap;
+      min = Math.min(min, lap);
+      max = Math.max(max, lap);
+    }
+    return new LapSummary(size, sum, min, max);
+  }
+
+  /**
+   * Returns the summary of the laps counted by <code>histogram</code>.
+   */
+  static LapSummary of(LapHistogram histogram) {
+    if (histogram.getCount() == 0) {
+      return EMPTY;
+    }
+    return new LapSummary(histogram.getCount(), histogram.getSum(),
+        histogram.getMin(), histogram.getMax());
+  }
+
+  /**
+   * Returns the summary of this summary's laps together with <code>other</code>'s.
+   */
+  LapSummary plus(LapSummary other) {
+    if (other.count == 0) {
+      return this;
+    }
+    if (count == 0) {
+      return other;
+    }
+    return new LapSummary(count + other.count, sum + other.sum,
+        Math.min(min, other.min), Math.max(max, other.max));
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  /**
+   * Returns the shortest lap, or 0 if there are none.
+   */
+  public long getMin() {
+    return min;
+  }
+
+  /**
+   * Returns the longest lap, or 0 if there are none.
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Returns the mean lap, or 0 if there are none.
+   */
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max + " (ns)";
+  }
+}
@@ -0,0 +1,27 @@
+package com.estella.stopwatch.impl;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable List view over a snapshot of primitive lap times.  Each
+ * element is boxed only when it is read, so handing out the list doesn't
+ * allocate one Long per lap.
+ */
+class LapTimeList extends AbstractList<Long> implements RandomAccess {
+  private final long[] lapTimes;
+
+  LapTimeList(long[] lapTimes) {
+    this.lapTimes = lapTimes;
+  }
+
+  @Override
+  public Long get(int index) {
+    return lapTimes[index];
+  }
+
+  @Override
+  public int size() {
+    return lapTimes.length;
+  }
+}
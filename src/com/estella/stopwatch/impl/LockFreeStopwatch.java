@@ -0,0 +1,277 @@
+package com.estella.stopwatch.impl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An IStopwatch that never blocks.  The running flag and the time of the last
+ * lap share a single word that is updated with compare-and-set, and the laps
+ * are appended to a {@link ConcurrentLapBuffer}.
+ *
+ * When several threads lap at the same moment, each lap is measured against
+ * the lap that won the CAS before it, but the laps may land in the buffer in
+ * a slightly different order than their CASes succeeded.
+ */
+public class LockFreeStopwatch implements ManagedStopwatch {
+  /** Set while the stopwatch is running; the payload is the last lap time. */
+  private static final long RUNNING = 1L;
+  /** Set while stopped with a final lap; the payload is that lap. */
+  private static final long PENDING = 2L;
+  private static final int FLAG_BITS = 2;
+
+  private final String id;
+  /** All times are kept relative to this so they fit next to the flags. */
+  private final long origin;
+  private final AtomicLong state;
+  private final AtomicReference<ConcurrentLapBuffer> laps;
+  private volatile long lastStateChange;
+  private final TimeSource timeSource;
+  private final ConcurrencyGauge gauge;
+
+  /**
+   * Constructs a new lock-free stopwatch with the id that reads the time from
+   * <code>timeSource</code>.
+   * @throws IllegalArgumentException if <code>id</code> is empty or null.
+   */
+  LockFreeStopwatch(String id, TimeSource timeSource) {
+    if (id == null || id.trim().length() == 0) {
+      throw new IllegalArgumentException("Error: id cannot be empty or null.");
+    }
+    this.id = id;
+    this.timeSource = timeSource;
+    origin = timeSource.nanoTime();
+    state = new AtomicLong();
+    laps = new AtomicReference<>(new ConcurrentLapBuffer());
+    lastStateChange = 0;
+    gauge = new ConcurrencyGauge(timeSource);
+  }
+
+  private long getCurTimeInNanoSec() {
+    return timeSource.nanoTime() - origin;
+  }
+
+  private static long payload(long s) {
+    return s >> FLAG_BITS;
+  }
+
+  private static long encode(long payload, long flags) {
+    return (payload << FLAG_BITS) | flags;
+  }
+
+  /**
+   * Check whether the stopwatch is running
+   * @return true - is running, false - not running.
+   */
+  @Override
+  public boolean isRunning() {
+    return (state.get() & RUNNING) != 0;
+  }
+
+  /**
+   * Returns how long ago the stopwatch was last created, started, lapped,
+   * stopped or reset, or ended an interval begun with begin().
+   * @return the idle time in nanoseconds, as measured by the stopwatch's time source.
+   */
+  @Override
+  public long getIdleNanos() {
+    return getCurTimeInNanoSec() - lastStateChange;
+  }
+
+  /**
+   * Returns the Id of this stopwatch
+   * @return the Id of this stopwatch.  Will never be empty or null.
+   */
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Starts the stopwatch.  If the stopwatch was stopped, its final lap keeps
+   * counting from where it left off.
+   * @throws IllegalStateException if called when the stopwatch is already running
+   */
+  @Override
+  public void start() {
+    while (true) {
+      long s = state.get();
+      if ((s & RUNNING) != 0) {
+        throw new IllegalStateException("The stopwatch is already running.");
+      }
+      long now = getCurTimeInNanoSec();
+      long last = (s & PENDING) != 0 ? now - payload(s) : now;
+      if (state.compareAndSet(s, encode(last, RUNNING))) {
+        lastStateChange = now;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stores the time elapsed since the last time lap() was called
+   * or since start() was called if this is the first lap.
+   * @throws IllegalStateException if called when the stopwatch isn't running
+   */
+  @Override
+  public void lap() {
+    while (true) {
+      long s = state.get();
+      if ((s & RUNNING) == 0) {
+        throw new IllegalStateException("Sorry, the stopwatch isn't running.");
+      }
+      long now = getCurTimeInNanoSec();
+      if (state.compareAndSet(s, encode(now, RUNNING))) {
+        laps.get().add(Math.max(0, now - payload(s)));
+        lastStateChange = now;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Begins timing an interval.  Only reads the clock and counts the interval
+   * as in flight.
+   * @return a token to pass to end().
+   */
+  @Override
+  public long begin() {
+    gauge.begin();
+    return getCurTimeInNanoSec();
+  }
+
+  /**
+   * Ends an interval begun with begin() and appends its length to the lap
+   * buffer, whether or not the stopwatch is running.  Takes no lock and
+   * allocates nothing beyond the buffer's next chunk.  On a stopped
+   * stopwatch the final lap is moved into the buffer first, so a later
+   * start() begins a new lap instead of resuming it.
+   * @param token the value returned by begin()
+   * @throws IllegalArgumentException if <code>token</code> is later than now.
+   */
+  @Override
+  public void end(long token) {
+    long now = getCurTimeInNanoSec();
+    long lap = now - token;
+    if (lap < 0) {
+      gauge.cancel();
+      throw new IllegalArgumentException("Error: token is not from this stopwatch's begin()");
+    }
+    long s;
+    while (((s = state.get()) & PENDING) != 0) {
+      if (state.compareAndSet(s, 0)) {
+        laps.get().add(payload(s));
+      }
+    }
+    laps.get().add(lap);
+    lastStateChange = now;
+    gauge.end(lap);
+  }
+
+  /**
+   * Returns the in-flight, peak and throughput counters of the intervals
+   * timed with begin() and end().  The counters are live.
+   */
+  @Override
+  public ConcurrencyGauge getConcurrencyGauge() {
+    return gauge;
+  }
+
+  /**
+   * Stops the stopwatch (and records one final lap).  The final lap is held
+   * in the state word so that a later start() can resume it.
+   * @throws IllegalStateException if called when the stopwatch isn't running
+   */
+  @Override
+  public void stop() {
+    while (true) {
+      long s = state.get();
+      if ((s & RUNNING) == 0) {
+        throw new IllegalStateException("Sorry, the stopwatch isn't running.");
+      }
+      long now = getCurTimeInNanoSec();
+      if (state.compareAndSet(s, encode(Math.max(0, now - payload(s)), PENDING))) {
+        lastStateChange = now;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Resets the stopwatch.  If the stopwatch is running, this method stops the
+   * watch and resets it.  This also clears all recorded laps.  Laps recorded
+   * concurrently with a reset may or may not survive it.
+   */
+  @Override
+  public void reset() {
+    long s = state.getAndSet(0);
+    ConcurrentLapBuffer old = laps.get();
+    long next = old.firstLapNumber() + old.size() + ((s & PENDING) != 0 ? 1 : 0);
+    laps.set(new ConcurrentLapBuffer(next));
+    gauge.reset();
+    lastStateChange = getCurTimeInNanoSec();
+  }
+
+  /**
+   * Returns a list of lap times (in milliseconds).  This method can be called at
+   * any time and will not throw an exception.
+   * @return a list of recorded lap times or an empty list if no times are recorded.
+   */
+  @Override
+  public List<Long> getLapTimes() {
+    return new LapTimeList(getLapTimeArray());
+  }
+
+  /**
+   * Returns the count, sum, min and max of the recorded lap times.  This
+   * copies the laps, as getLapTimeArray() does.
+   */
+  @Override
+  public LapSummary getLapSummary() {
+    return LapSummary.of(getLapTimeArray());
+  }
+
+  /**
+   * Returns a copy of the recorded lap times (in nanoseconds) as a primitive array.
+   * @return an array of recorded lap times or an empty array if no times are recorded.
+   */
+  public long[] getLapTimeArray() {
+    long s = state.get();
+    long[] recorded = laps.get().toArray();
+    if ((s & PENDING) == 0) {
+      return recorded;
+    }
+    long[] result = new long[recorded.length + 1];
+    System.arraycopy(recorded, 0, result, 0, recorded.length);
+    result[recorded.length] = payload(s);
+    return result;
+  }
+
+  /**
+   * Appends the lap times recorded since lap number <code>sequence</code> to
+   * <code>laps</code>, in O(new laps).  A stopped stopwatch's final lap is
+   * still in the state word, where start() may continue it, so it is left
+   * out until end() or a lap() after a restart moves it into the buffer.
+   * @return the lap number to pass to the next call.
+   */
+  @Override
+  public long getLapTimesSince(long sequence, List<Long> laps) {
+    ConcurrentLapBuffer buffer = this.laps.get();
+    long first = buffer.firstLapNumber();
+    long end = first + buffer.size();
+    for (long i = Math.min(Math.max(sequence, first), end); i < end; i++) {
+      laps.add(buffer.get((int) (i - first)));
+    }
+    return end;
+  }
+
+  /**
+   * Returns a string representation of the stopwatch in the same format as
+   * {@link Stopwatch#toString()}.
+   */
+  @Override
+  public String toString() {
+    long s = state.get();
+    return Stopwatch.describe(id, (s & RUNNING) != 0, getLapTimeArray());
+  }
+}
@@ -0,0 +1,34 @@
+package com.estella.stopwatch.impl;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+/**
+ * The view of a stopwatch that StopwatchFactory needs to decide which
+ * stopwatches to evict and to summarize them.  Every IStopwatch the factory creates implements it.
+ */
+interface ManagedStopwatch extends IStopwatch {
+
+  /**
+   * Check whether the stopwatch is running
+   * @return true - is running, false - not running.
+   */
+  boolean isRunning();
+
+  /**
+   * Returns how long ago the stopwatch was last created, started, lapped,
+   * stopped or reset, or ended an interval begun with begin().
+   * @return the idle time in nanoseconds, as measured by the stopwatch's time source.
+   */
+  long getIdleNanos();
+
+  /**
+   * Returns the count, sum, min and max of the laps recorded since the last reset.
+   */
+  LapSummary getLapSummary();
+
+  /**
+   * Returns the in-flight, peak and throughput counters of the intervals
+   * timed with begin() and end().  The counters are live.
+   */
+  ConcurrencyGauge getConcurrencyGauge();
+}
@@ -0,0 +1,48 @@
+package com.estella.stopwatch.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TimeSource that only moves when told to, for deterministic tests.
+ */
+public class ManualTimeSource implements TimeSource {
+  private final AtomicLong time;
+
+  /**
+   * Constructs a time source that starts at 0.
+   */
+  public ManualTimeSource() {
+    time = new AtomicLong();
+  }
+
+  @Override
+  public long nanoTime() {
+    return time.get();
+  }
+
+  /**
+   * Returns 0: nothing else defines the time of a ManualTimeSource.
+   */
+  @Override
+  public long getErrorBoundNanos() {
+    return 0;
+  }
+
+  /**
+   * Moves the time forward.
+   * @throws IllegalArgumentException if <code>amount</code> is negative or
+   *     <code>unit</code> is null.
+   */
+  public void advance(long amount, TimeUnit unit) {
+    if (amount < 0 || unit == null) {
+      throw new IllegalArgumentException("Error: time cannot go backwards.");
+    }
+    time.addAndGet(unit.toNanos(amount));
+  }
+
+  @Override
+  public String toString() {
+    return "ManualTimeSource [time=" + time.get() + " ns]";
+  }
+}
@@ -0,0 +1,138 @@
+package com.estella.stopwatch.impl;
+
+import java.util.Arrays;
+
+/**
+ * Times blocks of code with try-with-resources:
+ * <pre>
+ *   private static final ScopedTimer QUERY_TIMER = ScopedTimer.create("db.query");
+ *   ...
+ *   try (ScopedTimer.Scope scope = QUERY_TIMER.begin()) {
+ *     runQuery();
+ *   }
+ * </pre>
+ * Every thread gets its own Stopwatch, registered with StopwatchFactory
+ * the first time the thread uses the timer under the id
+ * <code>name + " thread " + threadId</code>.  Each timed block becomes one
+ * lap of that stopwatch.  After the first use, begin() and close() cost a
+ * thread-local lookup and two time source readings: there is no factory
+ * lookup, no id string and no per-call allocation (beyond the lap storage
+ * growing, which a lap retention or histogram-only configuration avoids).
+ *
+ * Scopes of the same timer may be nested on one thread; each is recorded
+ * as its own lap.  A thread's stopwatch stays in the factory after the
+ * thread ends, until it is released or evicted.  Its stopwatch is never
+ * started, but every recorded lap resets its idle time, so eviction by
+ * idle time only takes the stopwatches of threads that stopped using the
+ * timer.  Timer names should be unique: a second timer with the same name
+ * can't register its stopwatches.
+ *
+ * The per-thread registration suits a fixed set of long-lived threads, such
+ * as a pool.  With a thread per request, as is usual with virtual threads,
+ * every request is a new thread: its first begin() builds an id string and
+ * a Stopwatch and inserts it into the factory, and those stopwatches pile
+ * up until they are evicted.  Bound the factory with
+ * StopwatchFactory.setCapacity or setStoppedTimeToLive in that case, or time
+ * the requests with a shared LOCK_FREE or STRIPED stopwatch's begin() and
+ * end() instead.
+ */
+public class ScopedTimer {
+  private final String name;
+  private final StopwatchConfig config;
+  private final ThreadLocal<Scope> scopes;
+
+  /**
+   * A thread's open scopes of one timer.  The same object is returned by
+   * every begin() on the thread, so closing it ends the innermost open scope.
+   */
+  public static final class Scope implements AutoCloseable {
+    private final Stopwatch watch;
+    private long[] beginTimes;
+    private int depth;
+
+    Scope(Stopwatch watch) {
+      this.watch = watch;
+      beginTimes = new long[4];
+    }
+
+    void begin() {
+      if (depth == beginTimes.length) {
+        beginTimes = Arrays.copyOf(beginTimes, depth * 2);
+      }
+      beginTimes[depth++] = watch.readTime();
+    }
+
+    /**
+     * Ends the innermost open scope and records its duration as a lap.
+     * @throws IllegalStateException if no scope is open on this thread.
+     */
+    @Override
+    public void close() {
+      if (depth == 0) {
+        throw new IllegalStateException("Sorry, there is no open scope to close.");
+      }
+      long now = watch.readTime();
+      watch.recordLap(now - beginTimes[--depth], now);
+    }
+
+    /**
+     * Returns the stopwatch this thread's scopes are recorded in.
+     */
+    public Stopwatch getStopwatch() {
+      return watch;
+    }
+  }
+
+  private ScopedTimer(String name, StopwatchConfig config) {
+    this.name = name;
+    this.config = config;
+    scopes = new ThreadLocal<>();
+  }
+
+  /**
+   * Creates a timer whose stopwatches use the default configuration.
+   * @throws IllegalArgumentException if <code>name</code> is empty or null.
+   */
+  public static ScopedTimer create(String name) {
+    return create(name, StopwatchConfig.defaults());
+  }
+
+  /**
+   * Creates a timer whose stopwatches are configured by <code>config</code>.
+   * @throws IllegalArgumentException if <code>name</code> is empty or null, or
+   *     <code>config</code> is null or isn't for SYNCHRONIZED stopwatches.
+   */
+  public static ScopedTimer create(String name, StopwatchConfig config) {
+    if (name == null || name.trim().length() == 0) {
+      throw new IllegalArgumentException("Error: name cannot be empty or null.");
+    }
+    if (config == null || config.getKind() != StopwatchKind.SYNCHRONIZED) {
+      throw new IllegalArgumentException("Error: a scoped timer needs a SYNCHRONIZED config.");
+    }
+    return new ScopedTimer(name, config);
+  }
+
+  /**
+   * Returns the name of this timer.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Opens a scope on the current thread.  Close the returned scope, normally
+   * with try-with-resources, on the same thread to record the lap.
+   * @return this thread's Scope for this timer.
+   */
+  public Scope begin() {
+    Scope scope = scopes.get();
+    if (scope == null) {
+      Stopwatch watch = (Stopwatch) StopwatchFactory.getStopwatch(
+          name + " thread " + Thread.currentThread().getId(), config);
+      scope = new Scope(watch);
+      scopes.set(scope);
+    }
+    scope.begin();
+    return scope;
+  }
+}
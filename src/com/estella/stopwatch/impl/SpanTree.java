@@ -0,0 +1,278 @@
+package com.estella.stopwatch.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+/**
+ * Times a request and its nested stages as a tree of spans.  Spans live in
+ * parallel primitive arrays and are addressed by int handles, so a tree can
+ * be built, read and reset again for the next request without allocating
+ * per span; the arrays only grow when a request has more spans than any
+ * before it.
+ * <pre>
+ *   int request = spans.begin("request");
+ *   int query = spans.begin("db.query");   // a child of "request"
+ *   spans.end(query);
+ *   spans.end(request);
+ *   String report = spans.toString();
+ *   spans.reset();
+ * </pre>
+ * A span's total time is from its begin() to its end(); its self time is
+ * the total minus the total time of its children.  Spans must be ended in
+ * the reverse order they began.
+ *
+ * A tree may be given an owning IStopwatch, typically one per endpoint from
+ * StopwatchFactory.  Every root span is then also timed with the owner's
+ * begin() and end(), so each request's total becomes a lap of the owner and
+ * shows up in its lap times, summaries and aggregates.
+ *
+ * This class is not thread-safe; use one tree per request or per thread.
+ */
+public class SpanTree {
+  private final TimeSource timeSource;
+  /** Times the root spans; null if the tree has no owner. */
+  private final IStopwatch owner;
+  /** The owner's token for the open root span. */
+  private long ownerToken;
+  private String[] names;
+  private int[] parents;
+  private int[] depths;
+  private long[] beginTimes;
+  private long[] totals;
+  private long[] childTotals;
+  private int size;
+  /** The innermost open span, or -1. */
+  private int current;
+
+  /**
+   * Constructs a tree with room for <code>capacity</code> spans that reads
+   * the system time.
+   * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+   */
+  public SpanTree(int capacity) {
+    this(capacity, SystemTimeSource.INSTANCE);
+  }
+
+  /**
+   * Constructs a tree with room for <code>capacity</code> spans that reads
+   * the time from <code>timeSource</code>.
+   * @throws IllegalArgumentException if <code>capacity</code> is not positive
+   *     or <code>timeSource</code> is null.
+   */
+  public SpanTree(int capacity, TimeSource timeSource) {
+    this(capacity, timeSource, null);
+  }
+
+  /**
+   * Constructs a tree with room for <code>capacity</code> spans that reads
+   * the system time and records the total of every root span as a lap of
+   * <code>owner</code>.
+   * @throws IllegalArgumentException if <code>capacity</code> is not positive
+   *     or <code>owner</code> is null.
+   */
+  public SpanTree(int capacity, IStopwatch owner) {
+    this(capacity, SystemTimeSource.INSTANCE, checkOwner(owner));
+  }
+
+  /**
+   * Constructs a tree with room for <code>capacity</code> spans that reads
+   * the time from <code>timeSource</code> and, unless <code>owner</code> is
+   * null, records the total of every root span as a lap of <code>owner</code>.
+   * @throws IllegalArgumentException if <code>capacity</code> is not positive
+   *     or <code>timeSource</code> is null.
+   */
+  public SpanTree(int capacity, TimeSource timeSource, IStopwatch owner) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Error: capacity must be positive.");
+    }
+    if (timeSource == null) {
+      throw new IllegalArgumentException("Error: time source cannot be null");
+    }
+    this.timeSource = timeSource;
+    this.owner = owner;
+    names = new String[capacity];
+    parents = new int[capacity];
+    depths = new int[capacity];
+    beginTimes = new long[capacity];
+    totals = new long[capacity];
+    childTotals = new long[capacity];
+    current = -1;
+  }
+
+  private static IStopwatch checkOwner(IStopwatch owner) {
+    if (owner == null) {
+      throw new IllegalArgumentException("Error: owner cannot be null");
+    }
+    return owner;
+  }
+
+  /**
+   * Returns the stopwatch the root spans are recorded in, or null.
+   */
+  public IStopwatch getOwner() {
+    return owner;
+  }
+
+  private void grow() {
+    int capacity = names.length * 2;
+    names = Arrays.copyOf(names, capacity);
+    parents = Arrays.copyOf(parents, capacity);
+    depths = Arrays.copyOf(depths, capacity);
+    beginTimes = Arrays.copyOf(beginTimes, capacity);
+    totals = Arrays.copyOf(totals, capacity);
+    childTotals = Arrays.copyOf(childTotals, capacity);
+  }
+
+  /**
+   * Begins a span as a child of the innermost open span, or as a new root
+   * if no span is open.  A root span also begins an interval of the owner.
+   * @param name the name of the span, usually a constant
+   * @return the handle of the new span.
+   * @throws IllegalArgumentException if <code>name</code> is null.
+   */
+  public int begin(String name) {
+    if (name == null) {
+      throw new IllegalArgumentException("Error: name cannot be null.");
+    }
+    if (size == names.length) {
+      grow();
+    }
+    int span = size++;
+    names[span] = name;
+    parents[span] = current;
+    depths[span] = current < 0 ? 0 : depths[current] + 1;
+    totals[span] = -1;
+    childTotals[span] = 0;
+    current = span;
+    if (owner != null && parents[span] < 0) {
+      ownerToken = owner.begin();
+    }
+    beginTimes[span] = timeSource.nanoTime();
+    return span;
+  }
+
+  /**
+   * Ends a span and adds its total time to its parent's children time.
+   * Ending a root span ends the owner's interval, which records it as a lap.
+   * @param span the handle returned by begin()
+   * @throws IllegalStateException if <code>span</code> isn't the innermost open span.
+   */
+  public void end(int span) {
+    long now = timeSource.nanoTime();
+    if (span != current || span < 0) {
+      throw new IllegalStateException("Sorry, only the innermost open span can be ended.");
+    }
+    long total = now - beginTimes[span];
+    totals[span] = total;
+    int parent = parents[span];
+    if (parent >= 0) {
+      childTotals[parent] += total;
+    } else if (owner != null) {
+      owner.end(ownerToken);
+    }
+    current = parent;
+  }
+
+  /**
+   * Forgets every span so the tree can be reused.  The arrays keep their size.
+   * If a root span is still open its owner's interval is ended, recording
+   * the time so far, so the owner isn't left with an interval in flight.
+   */
+  public void reset() {
+    if (owner != null && current >= 0) {
+      owner.end(ownerToken);
+    }
+    Arrays.fill(names, 0, size, null);
+    size = 0;
+    current = -1;
+  }
+
+  /**
+   * Returns the number of spans begun since the last reset.  Handles run from
+   * 0 to size() - 1 in the order the spans began, which puts every span after
+   * its parent.
+   */
+  public int size() {
+    return size;
+  }
+
+  private void check(int span) {
+    if (span < 0 || span >= size) {
+      throw new IndexOutOfBoundsException("Span: " + span + ", Size: " + size);
+    }
+  }
+
+  public String getName(int span) {
+    check(span);
+    return names[span];
+  }
+
+  /**
+   * Returns the handle of the span's parent, or -1 for a root span.
+   */
+  public int getParent(int span) {
+    check(span);
+    return parents[span];
+  }
+
+  /**
+   * Returns how deep the span is nested; root spans are at depth 0.
+   */
+  public int getDepth(int span) {
+    check(span);
+    return depths[span];
+  }
+
+  public boolean isOpen(int span) {
+    check(span);
+    return totals[span] < 0;
+  }
+
+  /**
+   * Returns the span's total time in nanoseconds, up to now if it is still open.
+   */
+  public long getTotalNanos(int span) {
+    check(span);
+    return totals[span] >= 0 ? totals[span] : timeSource.nanoTime() - beginTimes[span];
+  }
+
+  /**
+   * Returns the span's total time minus the total time of its ended children,
+   * in nanoseconds.
+   */
+  public long getSelfNanos(int span) {
+    return getTotalNanos(span) - childTotals[span];
+  }
+
+  /**
+   * Appends one line per span to <code>sb</code>, indented by depth, with
+   * its total and self time in milliseconds.
+   */
+  public void dump(StringBuilder sb) {
+    for (int span = 0; span < size; span++) {
+      for (int i = 0; i < depths[span]; i++) {
+        sb.append("  ");
+      }
+      sb.append(names[span])
+          .append(" - total ").append(toMillis(getTotalNanos(span)))
+          .append(" ms, self ").append(toMillis(getSelfNanos(span))).append(" ms");
+      if (isOpen(span)) {
+        sb.append(" (running)");
+      }
+      sb.append("\n");
+    }
+  }
+
+  private static long toMillis(long nanos) {
+    return TimeUnit.MILLISECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    dump(sb);
+    return sb.toString();
+  }
+}
@@ -1,46 +1,137 @@
 package com.estella.stopwatch.impl;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.estella.stopwatch.api.IStopwatch;
-
-public class Stopwatch implements IStopwatch {
-  private final String id;
-  private final List<Long> lapTimeList;
-  private final Object lock;
+public class Stopwatch implements ManagedStopwatch {
+  private volatile String id;
+  private final LapStore lapTimeList;
+  private final boolean rawLaps;
+  /** Null unless the stopwatch was configured with a histogram. */
+  private final LapHistogram histogram;
+  /** Null unless the stopwatch was configured with an aggregate key. */
+  private final LapAggregate aggregate;
+  /** The label id of each raw lap; null until the first labelled lap. */
+  private LapLabelColumn lapLabelList;
+  /** The slot of each label this stopwatch has used; null until the first labelled lap. */
+  private LapLabelSlots labelSlots;
+  /** Per-label count, sum, min and max, indexed by the label's slot. */
+  private long[] labelCounts;
+  private long[] labelSums;
+  private long[] labelMins;
+  private long[] labelMaxes;
+  private final ReentrantLock lock;
   private long lastLapTime = 0;
-  private Boolean running;
+  /** The most recent lap, which start() resumes when there are no raw laps. */
+  private long lastRecordedLap = 0;
+  /** Whether the last stored lap is the final lap of stop(), which start() resumes. */
+  private boolean finalLapKept = false;
+  /** The number of the first lap in lapTimeList, not counting laps a LapRing dropped. */
+  private long firstLapNumber = 0;
+  /** Written under <code>lock</code>; volatile so isRunning() can read it without the lock. */
+  private volatile boolean running;
+  private final boolean pooled;
+  private volatile long lastStateChange;
+  private final TimeSource timeSource;
+  private final ConcurrencyGauge gauge;
   
   /**
    * Constructs a new stopwatch with the id.
    * @throws IllegalArgumentException if <code>id</code> is empty or null.
    */
   Stopwatch(String id) {
+    this(id, false, StopwatchConfig.defaults(), SystemTimeSource.INSTANCE);
+  }
+
+  /**
+   * Constructs a new stopwatch with the id that stores its laps as
+   * <code>config</code> says and reads the time from <code>timeSource</code>.
+   * A pooled stopwatch may be recycled by the factory's pool once it is released.
+   * @throws IllegalArgumentException if <code>id</code> is empty or null.
+   */
+  Stopwatch(String id, boolean pooled, StopwatchConfig config, TimeSource timeSource) {
     if (id == null || id.trim().length() == 0) {
       throw new IllegalArgumentException("Error: id cannot be empty or null.");
     } else {
       this.id = id;
-      lapTimeList = Collections.synchronizedList(new ArrayList<Long>());
+      this.timeSource = timeSource;
+      lapTimeList = config.getLapRetention() > 0
+          ? new LapRing(config.getLapRetention()) : new LapBuffer();
+      rawLaps = config.keepsRawLaps();
+      histogram = config.hasHistogram() ? new LapHistogram() : null;
+      aggregate = config.getAggregateKey() != null
+          ? StopwatchFactory.getAggregate(config.getAggregateKey()) : null;
       running = false;
-      lock = new Object();
+      lock = new ReentrantLock();
+      lastStateChange = getCurTimeInNanoSec();
+      gauge = new ConcurrencyGauge(timeSource);
+      this.pooled = pooled;
+    }
+  }
+
+  /**
+   * Returns the factory aggregate this stopwatch adds its laps to, or null.
+   */
+  LapAggregate getAggregate() {
+    return aggregate;
+  }
+
+  /**
+   * Returns the time source this stopwatch reads the time from.
+   */
+  TimeSource getTimeSource() {
+    return timeSource;
+  }
+
+  /**
+   * Check whether the factory may hand this stopwatch out again after it is released.
+   * @return true if the stopwatch belongs to the factory's pool.
+   */
+  boolean isPooled() {
+    return pooled;
+  }
+
+  /**
+   * Resets the stopwatch and gives it a new id so that the pool can hand it
+   * out again.  The lap buffer keeps its capacity.
+   */
+  void recycle(String newId) {
+    lock.lock();
+    try {
+      id = newId;
+      running = false;
+      clearLaps();
+      gauge.reset();
+      lastStateChange = getCurTimeInNanoSec();
+    } finally {
+      lock.unlock();
     }
   }
   
   private long getCurTimeInNanoSec() {
-    return System.nanoTime();
+    return timeSource.nanoTime();
   }
   
   /**
    * Check whether the stopwatch is running
    * @return true - is running, false - not running.
    */
+  @Override
   public boolean isRunning() {
     return running;
   }
+
+  /**
+   * Returns how long ago the stopwatch was last created, started, lapped,
+   * stopped or reset, or recorded a lap timed outside it, as end() does.
+   * @return the idle time in nanoseconds, as measured by the stopwatch's time source.
+   */
+  @Override
+  public long getIdleNanos() {
+    return getCurTimeInNanoSec() - lastStateChange;
+  }
   
   /**
    * Returns the Id of this stopwatch
@@ -57,29 +148,183 @@ public class Stopwatch implements IStopwatch {
    */
   @Override
   public void start() {
-    synchronized(lock) {
+    lock.lock();
+    try {
       if (running) {
         throw new IllegalStateException("The stopwatch is already running.");
       } else {
         running = true;
-        if (lapTimeList.isEmpty()) {
-          lastLapTime = getCurTimeInNanoSec();
+        long now = getCurTimeInNanoSec();
+        if (!finalLapKept) {
+          lastLapTime = now;
         } else {
-          lastLapTime = getCurTimeInNanoSec() - lapTimeList.remove(lapTimeList.size()-1);
+          lastLapTime = now - removeLastLap();
+          finalLapKept = false;
         }
+        lastStateChange = now;
       }
+    } finally {
+      lock.unlock();
     }
   }
   
   /**
-   * Record the latest lap time, and add the lap time to the list of lap times.
-   * @return true if this lap time successfully added to the list.
+   * Record the latest lap time, and add the lap time to the list of lap times
+   * and the histogram.  Must be called while holding <code>lock</code>.
    */
-  private boolean addLap(long lastLapTime) {
+  private void addLap(long lastLapTime) {
+    addLap(lastLapTime, LapLabels.NO_LABEL);
+  }
+
+  private void addLap(long lastLapTime, int labelId) {
     long curTime = getCurTimeInNanoSec();
-    Boolean added = lapTimeList.add(curTime - lastLapTime);
+    storeLap(curTime - lastLapTime, labelId);
     this.lastLapTime = curTime;
-    return added;
+  }
+
+  /**
+   * Adds a lap time to the list of lap times, the histogram, the factory's
+   * aggregate and its label's aggregates.  Must be called while holding <code>lock</code>.
+   */
+  private void storeLap(long lap, int labelId) {
+    if (rawLaps) {
+      lapTimeList.add(lap);
+      if (lapLabelList == null && labelId != LapLabels.NO_LABEL) {
+        lapLabelList = lapTimeList instanceof LapRing
+            ? new LapLabelColumn(((LapRing) lapTimeList).capacity()) : new LapLabelColumn();
+        for (int i = 1; i < lapTimeList.size(); i++) {
+          lapLabelList.add(LapLabels.NO_LABEL);
+        }
+      }
+      if (lapLabelList != null) {
+        lapLabelList.add(labelId);
+      }
+    }
+    if (histogram != null) {
+      histogram.record(lap);
+    }
+    if (aggregate != null) {
+      aggregate.record(lap);
+    }
+    if (labelId != LapLabels.NO_LABEL) {
+      addToLabel(labelId, lap);
+    }
+    lastRecordedLap = lap;
+    finalLapKept = false;
+  }
+
+  private void addToLabel(int labelId, long lap) {
+    if (labelSlots == null) {
+      labelSlots = new LapLabelSlots();
+    }
+    int slot = labelSlots.slotOf(labelId);
+    if (labelCounts == null || slot >= labelCounts.length) {
+      int length = labelCounts == null ? 4 : labelCounts.length * 2;
+      int from = labelCounts == null ? 0 : labelCounts.length;
+      labelCounts = labelCounts == null ? new long[length] : Arrays.copyOf(labelCounts, length);
+      labelSums = labelSums == null ? new long[length] : Arrays.copyOf(labelSums, length);
+      labelMaxes = labelMaxes == null ? new long[length] : Arrays.copyOf(labelMaxes, length);
+      labelMins = labelMins == null ? new long[length] : Arrays.copyOf(labelMins, length);
+      Arrays.fill(labelMins, from, length, Long.MAX_VALUE);
+    }
+    labelCounts[slot]++;
+    labelSums[slot] += lap;
+    labelMins[slot] = Math.min(labelMins[slot], lap);
+    labelMaxes[slot] = Math.max(labelMaxes[slot], lap);
+  }
+
+  /**
+   * Records a lap that was timed outside the stopwatch, whether or not the
+   * stopwatch is running.  The lap ended at <code>endTime</code>, which
+   * counts as a state change: such a stopwatch is never started, and it
+   * mustn't look idle to eviction while laps keep arriving.
+   */
+  void recordLap(long lapTime, long endTime) {
+    lock.lock();
+    try {
+      storeLap(lapTime, LapLabels.NO_LABEL);
+      lastStateChange = endTime;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reads the stopwatch's time source.
+   */
+  long readTime() {
+    return getCurTimeInNanoSec();
+  }
+
+  /**
+   * Takes back the final lap so that start() can resume it.  Must be called
+   * while holding <code>lock</code>.
+   */
+  private long removeLastLap() {
+    long lap = rawLaps ? lapTimeList.removeLast() : lastRecordedLap;
+    if (histogram != null) {
+      histogram.remove(lap);
+    }
+    if (aggregate != null) {
+      aggregate.remove(lap);
+    }
+    if (lapLabelList != null) {
+      int labelId = lapLabelList.removeLast();
+      if (labelId != LapLabels.NO_LABEL) {
+        int slot = labelSlots.find(labelId);
+        labelCounts[slot]--;
+        labelSums[slot] -= lap;
+      }
+    }
+    return lap;
+  }
+
+  private void clearLaps() {
+    firstLapNumber = endLapNumber();
+    lapTimeList.clear();
+    if (histogram != null) {
+      histogram.clear();
+    }
+    if (lapLabelList != null) {
+      lapLabelList.clear();
+    }
+    if (labelCounts != null) {
+      Arrays.fill(labelCounts, 0);
+      Arrays.fill(labelSums, 0);
+      Arrays.fill(labelMins, Long.MAX_VALUE);
+      Arrays.fill(labelMaxes, 0);
+    }
+    lastRecordedLap = 0;
+    finalLapKept = false;
+  }
+
+  /**
+   * Returns the number of the oldest kept lap.  Must be called while holding
+   * <code>lock</code>.
+   */
+  private long startLapNumber() {
+    if (lapTimeList instanceof LapRing) {
+      return firstLapNumber + ((LapRing) lapTimeList).droppedCount();
+    }
+    return firstLapNumber;
+  }
+
+  /**
+   * Returns the number the next lap will get.  Must be called while holding
+   * <code>lock</code>.
+   */
+  private long endLapNumber() {
+    return startLapNumber() + lapTimeList.size();
+  }
+
+  /**
+   * Returns the number after the last lap that readers may see.  The final
+   * lap of a stopped stopwatch is held back, since start() may still continue
+   * it.  Must be called while holding <code>lock</code>.
+   */
+  private long readableEndLapNumber() {
+    long end = endLapNumber();
+    return finalLapKept && !lapTimeList.isEmpty() ? end - 1 : end;
   }
   
   /**
@@ -89,28 +334,103 @@ public class Stopwatch implements IStopwatch {
    */
   @Override
   public void lap() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       if (!running) {
         throw new IllegalStateException("Sorry, the stopwatch isn't running.");
       } else {
         addLap(lastLapTime);
+        lastStateChange = lastLapTime;
       }
+    } finally {
+      lock.unlock();
     }
   }
 
+  /**
+   * Stores the time elapsed since the last lap, like lap(), under a label.
+   * Only the label's small int id is stored with the lap, and the label's
+   * count, sum, min and max are updated as the lap is recorded.  Labels
+   * should come from a fixed set of stage names; they are kept for the life
+   * of the JVM.
+   * @throws IllegalArgumentException if <code>label</code> is empty or null
+   * @throws IllegalStateException if called when the stopwatch isn't running
+   */
+  public void lap(String label) {
+    int labelId = LapLabels.idOf(label);
+    lock.lock();
+    try {
+      if (!running) {
+        throw new IllegalStateException("Sorry, the stopwatch isn't running.");
+      } else {
+        addLap(lastLapTime, labelId);
+        lastStateChange = lastLapTime;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Begins timing an interval.  Only reads the clock and counts the interval
+   * as in flight; no lock is taken.
+   * @return a token to pass to end().
+   */
+  @Override
+  public long begin() {
+    gauge.begin();
+    return getCurTimeInNanoSec();
+  }
+
+  /**
+   * Ends an interval begun with begin() and stores its length as a lap,
+   * whether or not the stopwatch is running.  The lap is stored under the
+   * stopwatch's lock like any other lap; a {@link LockFreeStopwatch} stores
+   * it without one.  After an interval ends on a stopped stopwatch, start()
+   * begins a new lap instead of resuming the final one.
+   * @param token the value returned by begin()
+   * @throws IllegalArgumentException if <code>token</code> is later than now.
+   */
+  @Override
+  public void end(long token) {
+    long now = getCurTimeInNanoSec();
+    long lap = now - token;
+    if (lap < 0) {
+      gauge.cancel();
+      throw new IllegalArgumentException("Error: token is not from this stopwatch's begin()");
+    }
+    recordLap(lap, now);
+    gauge.end(lap);
+  }
+
+  /**
+   * Returns the in-flight, peak and throughput counters of the intervals
+   * timed with begin() and end().  The counters are live; reading them never
+   * takes the stopwatch's lock.
+   */
+  @Override
+  public ConcurrencyGauge getConcurrencyGauge() {
+    return gauge;
+  }
+
   /**
    * Stops the stopwatch (and records one final lap).
    * @throws IllegalStateException if called when the stopwatch isn't running
    */
   @Override
   public void stop() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       if (!running) {
         throw new IllegalStateException("Sorry, the stopwatch isn't running.");
       } else {
         addLap(lastLapTime);
+        finalLapKept = true;
         running = false;
+        lastStateChange = this.lastLapTime;
       }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -120,11 +440,16 @@ public class Stopwatch implements IStopwatch {
    */
   @Override
   public void reset() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       if (running) {
         running = false;
       }
-      lapTimeList.clear();
+      clearLaps();
+      gauge.reset();
+      lastStateChange = getCurTimeInNanoSec();
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -135,7 +460,174 @@ public class Stopwatch implements IStopwatch {
    */
   @Override
   public List<Long> getLapTimes() {
-    return new ArrayList<Long>(lapTimeList);
+    return new LapTimeList(getLapTimeArray());
+  }
+
+  /**
+   * Returns a copy of the recorded lap times (in nanoseconds) as a primitive array,
+   * so callers that don't need a List can read the laps without boxing.
+   * @return an array of recorded lap times or an empty array if no times are recorded.
+   */
+  public long[] getLapTimeArray() {
+    lock.lock();
+    try {
+      return lapTimeList.toArray();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Copies the lap times (in nanoseconds) recorded since <code>cursor</code>'s
+   * previous read into <code>dest</code>, starting at <code>dest[0]</code>,
+   * and moves the cursor past them.  At most <code>dest.length</code> laps are
+   * copied; call again to fetch the rest.  Nothing is allocated, so pollers
+   * can keep a cursor and an array per stopwatch and read as often as they like.
+   *
+   * Laps are numbered as for getLapTimesSince, and like there the final lap
+   * of a stopped stopwatch is only read once it can no longer be continued.
+   * @return the number of laps copied, 0 if there are no new laps.
+   */
+  public int readLapTimes(LapCursor cursor, long[] dest) {
+    lock.lock();
+    try {
+      long first = startLapNumber();
+      long end = readableEndLapNumber();
+      long from = cursor.position;
+      if (from < first) {
+        cursor.missed += first - from;
+        from = first;
+      }
+      if (from > end) {
+        from = end;
+      }
+      int n = (int) Math.min(dest.length, end - from);
+      lapTimeList.copyTo((int) (from - first), dest, 0, n);
+      cursor.position = from + n;
+      return n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends the lap times recorded since lap number <code>sequence</code> to
+   * <code>laps</code>, in O(new laps).  The final lap of a stopped stopwatch
+   * is not counted until it can no longer be continued.
+   * @return the lap number to pass to the next call.
+   */
+  @Override
+  public long getLapTimesSince(long sequence, List<Long> laps) {
+    lock.lock();
+    try {
+      long first = startLapNumber();
+      long end = readableEndLapNumber();
+      long from = Math.min(Math.max(sequence, first), end);
+      for (long i = from; i < end; i++) {
+        laps.add(lapTimeList.get((int) (i - first)));
+      }
+      return end;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the labels of the kept raw laps, in the same order as
+   * getLapTimes().  Laps recorded by lap() or stop() have a null label.
+   * @return a list of labels or an empty list if no times are recorded.
+   */
+  public List<String> getLapLabels() {
+    lock.lock();
+    try {
+      String[] labels = new String[lapTimeList.size()];
+      if (lapLabelList != null) {
+        for (int i = 0; i < labels.length; i++) {
+          labels[i] = LapLabels.nameOf(lapLabelList.get(i));
+        }
+      }
+      return Arrays.asList(labels);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the count, sum, min and max of every lap recorded under
+   * <code>label</code> since the last reset, including laps no longer kept.
+   * @return the label's summary, or LapSummary.EMPTY if it has no laps.
+   */
+  public LapSummary getLabelSummary(String label) {
+    int labelId = LapLabels.find(label);
+    lock.lock();
+    try {
+      int slot = labelId <= 0 || labelSlots == null ? -1 : labelSlots.find(labelId);
+      if (slot < 0 || labelCounts[slot] == 0) {
+        return LapSummary.EMPTY;
+      }
+      return new LapSummary(labelCounts[slot], labelSums[slot],
+          labelMins[slot], labelMaxes[slot]);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the running aggregates of the laps that no longer fit into a
+   * stopwatch configured with a lap retention.
+   * @return the summary of the dropped laps, or LapSummary.EMPTY if none were dropped.
+   */
+  public LapSummary getDroppedLapSummary() {
+    if (!(lapTimeList instanceof LapRing)) {
+      return LapSummary.EMPTY;
+    }
+    lock.lock();
+    try {
+      return ((LapRing) lapTimeList).getDropped();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the count, sum, min and max of every lap recorded since the last
+   * reset, including laps no longer kept, without copying the laps.  With a
+   * histogram the min and max may be off by the histogram's precision after
+   * a lap was resumed.
+   */
+  @Override
+  public LapSummary getLapSummary() {
+    lock.lock();
+    try {
+      if (histogram != null) {
+        return LapSummary.of(histogram);
+      }
+      LapSummary kept = LapSummary.of(lapTimeList);
+      if (lapTimeList instanceof LapRing) {
+        return kept.plus(((LapRing) lapTimeList).getDropped());
+      }
+      return kept;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a copy of the histogram of every lap recorded since the last reset.
+   * Percentiles, min, max, mean and count can be read from it without
+   * touching the raw laps.
+   * @return the histogram, or null if this stopwatch wasn't configured with one.
+   */
+  public LapHistogram getLapHistogram() {
+    if (histogram == null) {
+      return null;
+    }
+    lock.lock();
+    try {
+      return histogram.copy();
+    } finally {
+      lock.unlock();
+    }
   }
   
   /**
@@ -157,7 +649,7 @@ public class Stopwatch implements IStopwatch {
     if (!this.id.equals(sw.getId())) { 
       return false;
     }
-    if (!this.lapTimeList.equals(sw.getLapTimes())) {
+    if (!Arrays.equals(this.getLapTimeArray(), sw.getLapTimeArray())) {
       return false;
     }
     if (this.running != sw.isRunning()) {
@@ -175,8 +667,8 @@ public class Stopwatch implements IStopwatch {
   public int hashCode() {
     int result = 17;
     result = 31 * result + (id == null ? 0 : id.hashCode());
-    result = 31 * result + (lapTimeList.hashCode());
-    result = 31 * result + (running.hashCode());
+    result = 31 * result + (Arrays.hashCode(getLapTimeArray()));
+    result = 31 * result + (Boolean.valueOf(running).hashCode());
     return result;
   }
   
@@ -195,18 +687,24 @@ public class Stopwatch implements IStopwatch {
    */
   @Override
   public String toString() {
+    return describe(id, running, getLapTimeArray());
+  }
+
+  /**
+   * Formats a stopwatch the way {@link #toString()} documents it.  Shared by
+   * the other IStopwatch implementations in this package.
+   */
+  static String describe(String id, boolean running, long[] lapTimes) {
     StringBuilder sb = new StringBuilder();
     sb.append("Stopwatch Id - " + id + "\n");
     sb.append("Stopwatch State - " + (running ? "running" : "stop (not running)") + "\n");
     sb.append("List of lap times as below.\n");
-    if (getLapTimes().size() == 0) {
+    if (lapTimes.length == 0) {
       sb.append("No laps so far...\n");
     } else {
-      ListIterator<Long> litr = getLapTimes().listIterator();
-      while (litr.hasNext()) {
-        int lapNum = litr.nextIndex() + 1;
-        long lapTime = TimeUnit.MILLISECONDS.convert(litr.next(), TimeUnit.NANOSECONDS);
-        sb.append("Lap - " + lapNum + ": " + lapTime + " ms.\n");
+      for (int i = 0; i < lapTimes.length; i++) {
+        long lapTime = TimeUnit.MILLISECONDS.convert(lapTimes[i], TimeUnit.NANOSECONDS);
+        sb.append("Lap - " + (i + 1) + ": " + lapTime + " ms.\n");
       }
     }
     return sb.toString();
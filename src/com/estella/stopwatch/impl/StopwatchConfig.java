@@ -0,0 +1,172 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * Describes the stopwatch StopwatchFactory should create.  Instances are
+ * immutable; every <code>with</code> method returns a changed copy, e.g.
+ * <code>StopwatchConfig.defaults().withHistogram(true)</code>.
+ *
+ * The lap storage and aggregate options only apply to {@link StopwatchKind#SYNCHRONIZED}
+ * stopwatches.
+ */
+public final class StopwatchConfig {
+  private static final StopwatchConfig DEFAULTS =
+      new StopwatchConfig(StopwatchKind.SYNCHRONIZED, false, true, 0, null, null);
+
+  private final StopwatchKind kind;
+  private final boolean histogram;
+  private final boolean rawLaps;
+  private final int retainedLaps;
+  private final TimeSource timeSource;
+  private final String aggregateKey;
+
+  private StopwatchConfig(StopwatchKind kind, boolean histogram, boolean rawLaps,
+      int retainedLaps, TimeSource timeSource, String aggregateKey) {
+    this.kind = kind;
+    this.histogram = histogram;
+    this.rawLaps = rawLaps;
+    this.retainedLaps = retainedLaps;
+    this.timeSource = timeSource;
+    this.aggregateKey = aggregateKey;
+  }
+
+  /**
+   * Returns the configuration of the stopwatches created by
+   * StopwatchFactory.getStopwatch(String): a synchronized stopwatch that keeps
+   * every lap and no histogram, and reads the factory's default time source.
+   */
+  public static StopwatchConfig defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns a copy of this configuration that creates stopwatches of the given kind.
+   * @throws IllegalArgumentException if <code>kind</code> is null.
+   */
+  public StopwatchConfig withKind(StopwatchKind kind) {
+    if (kind == null) {
+      throw new IllegalArgumentException("Error: kind cannot be null");
+    }
+    return new StopwatchConfig(kind, histogram, rawLaps, retainedLaps, timeSource, aggregateKey);
+  }
+
+  /**
+   * Returns a copy of this configuration that does or doesn't keep a
+   * {@link LapHistogram} of every lap.
+   */
+  public StopwatchConfig withHistogram(boolean histogram) {
+    return new StopwatchConfig(kind, histogram, rawLaps, retainedLaps, timeSource, aggregateKey);
+  }
+
+  /**
+   * Returns a copy of this configuration that does or doesn't keep the raw
+   * lap times.  Without them getLapTimes() is always empty and only the
+   * histogram is kept, so a stopwatch's memory stays the same however long
+   * it runs.  Turning raw laps off requires the histogram.
+   */
+  public StopwatchConfig withRawLaps(boolean rawLaps) {
+    return new StopwatchConfig(kind, histogram, rawLaps, retainedLaps, timeSource, aggregateKey);
+  }
+
+  /**
+   * Returns a copy of this configuration that keeps only the most recent
+   * <code>lastLaps</code> raw laps in a fixed-size ring.  Older laps are only
+   * kept as a running count, sum, min and max (see
+   * {@link Stopwatch#getDroppedLapSummary()}).
+   * @param lastLaps The number of laps to keep, or 0 to keep them all
+   * @throws IllegalArgumentException if <code>lastLaps</code> is negative.
+   */
+  public StopwatchConfig withLapRetention(int lastLaps) {
+    if (lastLaps < 0) {
+      throw new IllegalArgumentException("Error: lap retention cannot be negative");
+    }
+    return new StopwatchConfig(kind, histogram, rawLaps, lastLaps, timeSource, aggregateKey);
+  }
+
+  /**
+   * Returns a copy of this configuration whose stopwatches read the time from
+   * <code>timeSource</code> instead of the factory's default time source.
+   * @throws IllegalArgumentException if <code>timeSource</code> is null.
+   */
+  public StopwatchConfig withTimeSource(TimeSource timeSource) {
+    if (timeSource == null) {
+      throw new IllegalArgumentException("Error: time source cannot be null");
+    }
+    return new StopwatchConfig(kind, histogram, rawLaps, retainedLaps, timeSource, aggregateKey);
+  }
+
+  /**
+   * Returns a copy of this configuration whose stopwatches also add every lap
+   * to the factory's {@link LapAggregate} for <code>key</code>, shared by all
+   * stopwatches configured with the same key.
+   * @param key The aggregate key, or null for no aggregate
+   * @throws IllegalArgumentException if <code>key</code> is empty.
+   */
+  public StopwatchConfig withAggregate(String key) {
+    if (key != null && key.trim().length() == 0) {
+      throw new IllegalArgumentException("Error: aggregate key cannot be empty");
+    }
+    return new StopwatchConfig(kind, histogram, rawLaps, retainedLaps, timeSource, key);
+  }
+
+  public StopwatchKind getKind() {
+    return kind;
+  }
+
+  public boolean hasHistogram() {
+    return histogram;
+  }
+
+  public boolean keepsRawLaps() {
+    return rawLaps;
+  }
+
+  /**
+   * Returns how many recent raw laps are kept, or 0 if all of them are.
+   */
+  public int getLapRetention() {
+    return retainedLaps;
+  }
+
+  /**
+   * Returns the configured time source, or null to use the factory's default.
+   */
+  public TimeSource getTimeSource() {
+    return timeSource;
+  }
+
+  /**
+   * Returns the aggregate key, or null if laps are not aggregated.
+   */
+  public String getAggregateKey() {
+    return aggregateKey;
+  }
+
+  /**
+   * Creates a new, stopped stopwatch as configured, reading the time from
+   * <code>defaultTimeSource</code> unless the configuration names its own.
+   * @throws IllegalArgumentException if <code>id</code> is empty or null, or if
+   *     the options don't fit together.
+   */
+  ManagedStopwatch newStopwatch(String id, TimeSource defaultTimeSource) {
+    TimeSource source = timeSource != null ? timeSource : defaultTimeSource;
+    if (!rawLaps && !histogram) {
+      throw new IllegalArgumentException("Error: a stopwatch without raw laps needs a histogram");
+    }
+    if (kind != StopwatchKind.SYNCHRONIZED && (histogram || !rawLaps || retainedLaps > 0
+        || aggregateKey != null)) {
+      throw new IllegalArgumentException(
+          "Error: lap storage and aggregate options need a SYNCHRONIZED stopwatch");
+    }
+    if (kind == StopwatchKind.SYNCHRONIZED) {
+      return new Stopwatch(id, false, this, source);
+    }
+    return kind.newStopwatch(id, source);
+  }
+
+  @Override
+  public String toString() {
+    return "StopwatchConfig [kind=" + kind + ", histogram=" + histogram
+        + ", rawLaps=" + rawLaps + ", lapRetention=" + retainedLaps
+        + ", timeSource=" + timeSource + ", aggregate=" + aggregateKey + "]";
+  }
+}
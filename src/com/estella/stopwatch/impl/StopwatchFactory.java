@@ -1,8 +1,23 @@
 package com.estella.stopwatch.impl;
 
+import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 import com.estella.stopwatch.api.IStopwatch;
 
@@ -11,10 +26,38 @@ import com.estella.stopwatch.api.IStopwatch;
  * It maintains references to all created IStopwatch objects and provides a
  * convenient method for getting a list of those objects.
  *
+ * Stopwatches stay in the factory until they are released.  Optionally the
+ * factory also evicts stopped stopwatches after a time to live, and keeps the
+ * number of stopwatches near a capacity using an {@link EvictionPolicy}.
+ * Eviction runs on the threads creating stopwatches (or on a call to
+ * {@link #evictExpired()}); an evicted stopwatch keeps working for whoever
+ * holds it, the factory just forgets it and its id can be taken again.
+ *
+ * Stopwatches configured with an aggregate key also add every lap to the
+ * factory's {@link LapAggregate} for that key, so totals across many
+ * stopwatches can be read without walking their laps.  A
+ * {@link StopwatchGroup} keeps track of the stopwatches of one aggregate key.
+ *
  */
 public class StopwatchFactory {
-  private final static ConcurrentHashMap<String, IStopwatch> watchMap = new ConcurrentHashMap<>();
-  private final static Object lock = new Object();
+  private final static ConcurrentHashMap<String, ManagedStopwatch> watchMap = new ConcurrentHashMap<>();
+  private final static ConcurrentHashMap<String, LapAggregate> aggregates = new ConcurrentHashMap<>();
+  private final static ConcurrentHashMap<String, StopwatchGroup> groups = new ConcurrentHashMap<>();
+  /** Guards eviction so that only one thread scans the map at a time. */
+  private final static AtomicBoolean evicting = new AtomicBoolean();
+  private final static AtomicLong evictionCount = new AtomicLong();
+  private static volatile int capacity = 0;
+  private static volatile EvictionPolicy evictionPolicy = EvictionPolicy.LEAST_RECENTLY_USED;
+  private static volatile long stoppedTtlNanos = 0;
+  private static volatile long lastExpiry = System.nanoTime();
+  /**
+   * After an eviction pass that couldn't get the factory back under capacity,
+   * the size the factory must reach before the next pass; 0 when no pass
+   * is being held off.
+   */
+  private static volatile int nextEvictionSize = 0;
+  private static volatile TimeSource defaultTimeSource = SystemTimeSource.INSTANCE;
+  private static volatile StopwatchPool pool = new StopwatchPool(256, defaultTimeSource);
   
 	/**
 	 * Creates and returns a new IStopwatch object
@@ -24,26 +67,596 @@ public class StopwatchFactory {
    *     taken.
 	 */
 	public static IStopwatch getStopwatch(String id) {
+		return getStopwatch(id, StopwatchKind.SYNCHRONIZED);
+	}
+
+	/**
+	 * Creates and returns a new IStopwatch object of the given kind
+	 * @param id The identifier of the new object
+	 * @param kind The implementation to create
+	 * @return The new IStopwatch object
+	 * @throws IllegalArgumentException if <code>id</code> is empty, null, or already
+	 *     taken, or if <code>kind</code> is null.
+	 */
+	public static IStopwatch getStopwatch(String id, StopwatchKind kind) {
+		if (kind == null) {
+		  throw new IllegalArgumentException("Error: kind cannot be null");
+		}
+		return getStopwatch(id, StopwatchConfig.defaults().withKind(kind));
+	}
+
+	/**
+	 * Creates and returns a new IStopwatch object configured by <code>config</code>
+	 * @param id The identifier of the new object
+	 * @param config The implementation and lap storage to use
+	 * @return The new IStopwatch object
+	 * @throws IllegalArgumentException if <code>id</code> is empty, null, or already
+	 *     taken, or if <code>config</code> is null or inconsistent.
+	 */
+	public static IStopwatch getStopwatch(String id, StopwatchConfig config) {
+		if (id == null || id.trim().length() == 0) {
+		  throw new IllegalArgumentException("Error: id cannot be empty or null");
+		}
+		if (config == null) {
+		  throw new IllegalArgumentException("Error: config cannot be null");
+		}
+		ManagedStopwatch newWatch = newStopwatch(id, config);
+		register(id, newWatch);
+		return newWatch;
+	}
+
+	/**
+	 * Creates a stopwatch configured by <code>config</code> without registering it.
+	 * @throws IllegalArgumentException if <code>id</code> is empty or null, or if
+	 *     <code>config</code> is inconsistent.
+	 */
+	static ManagedStopwatch newStopwatch(String id, StopwatchConfig config) {
 		if (id == null || id.trim().length() == 0) {
 		  throw new IllegalArgumentException("Error: id cannot be empty or null");
 		}
-		synchronized (lock) {
-		  if (watchMap.containsKey(id)) {
-		    throw new IllegalArgumentException("This id has already been taken.");
-		  } else {
-		    IStopwatch newWatch = new Stopwatch(id);
-		    watchMap.put(id, newWatch);
-		    return newWatch;
+		return config.newStopwatch(id, defaultTimeSource);
+	}
+
+	/**
+	 * Adds a new stopwatch to the factory and evicts stopwatches if needed.
+	 * @throws IllegalArgumentException if <code>id</code> is already taken.
+	 */
+	static void register(String id, ManagedStopwatch watch) {
+		if (watchMap.putIfAbsent(id, watch) != null) {
+		  throw new IllegalArgumentException("This id has already been taken.");
+		}
+		maybeExpire();
+		maybeEvictOverCapacity(watch);
+	}
+
+	/**
+	 * Creates or recycles a pooled IStopwatch.  Pooled stopwatches are returned
+	 * to the factory's pool when they are released and handed out again, reset
+	 * and under a new id, keeping the lap capacity they had grown to.  Once
+	 * released, a pooled stopwatch must not be used by its previous owner.
+	 * @param id The identifier of the stopwatch
+	 * @return A stopped IStopwatch with no laps
+	 * @throws IllegalArgumentException if <code>id</code> is empty, null, or already
+	 *     taken.
+	 */
+	public static IStopwatch getPooledStopwatch(String id) {
+		if (id == null || id.trim().length() == 0) {
+		  throw new IllegalArgumentException("Error: id cannot be empty or null");
+		}
+		StopwatchPool current = pool;
+		Stopwatch watch = current.acquire();
+		if (watch == null) {
+		  watch = new Stopwatch(id, true, StopwatchConfig.defaults(), current.timeSource());
+		} else {
+		  watch.recycle(id);
+		}
+		if (watchMap.putIfAbsent(id, watch) != null) {
+		  recycle(watch);
+		  throw new IllegalArgumentException("This id has already been taken.");
+		}
+		maybeExpire();
+		maybeEvictOverCapacity(watch);
+		return watch;
+	}
+
+	/**
+	 * Sets the time source used by stopwatches created from now on, unless
+	 * their StopwatchConfig names one.  Stopwatches that already exist keep
+	 * theirs.  Pooled stopwatches are only reused with the time source they
+	 * were made with: the pool is emptied, and pooled stopwatches handed out
+	 * before the switch are dropped when they are released.  The default is
+	 * SystemTimeSource.INSTANCE.
+	 * @param timeSource The new default time source
+	 * @throws IllegalArgumentException if <code>timeSource</code> is null.
+	 */
+	public static void setDefaultTimeSource(TimeSource timeSource) {
+		if (timeSource == null) {
+		  throw new IllegalArgumentException("Error: time source cannot be null");
+		}
+		defaultTimeSource = timeSource;
+		pool = new StopwatchPool(pool.capacity(), timeSource);
+	}
+
+	/**
+	 * Sets how many released pooled stopwatches the factory keeps for reuse.
+	 * Stopwatches already in the pool are dropped.
+	 * @param maxPooled The pool capacity, or 0 to disable pooling
+	 * @throws IllegalArgumentException if <code>maxPooled</code> is negative.
+	 */
+	public static void setPoolCapacity(int maxPooled) {
+		if (maxPooled < 0) {
+		  throw new IllegalArgumentException("Error: pool capacity cannot be negative");
+		}
+		pool = new StopwatchPool(maxPooled, defaultTimeSource);
+	}
+
+	/**
+	 * Removes the stopwatch with the given id from the factory, so it is no
+	 * longer returned by getStopwatches() and its id can be used again.
+	 * A pooled stopwatch goes back to the pool.
+	 * @param id The identifier of the stopwatch to release
+	 * @return true if a stopwatch with this id was released.
+	 */
+	public static boolean releaseStopwatch(String id) {
+		if (id == null) {
+		  return false;
+		}
+		ManagedStopwatch watch = watchMap.remove(id);
+		if (watch == null) {
+		  return false;
+		}
+		forget(watch);
+		recycle(watch);
+		return true;
+	}
+
+	/**
+	 * Removes the given stopwatch from the factory.  Does nothing if its id
+	 * now belongs to a different stopwatch.  A pooled stopwatch goes back to
+	 * the pool.
+	 * @param watch The stopwatch to release
+	 * @return true if the stopwatch was released.
+	 */
+	public static boolean releaseStopwatch(IStopwatch watch) {
+		if (watch == null || !watchMap.remove(watch.getId(), watch)) {
+		  return false;
+		}
+		forget((ManagedStopwatch) watch);
+		recycle(watch);
+		return true;
+	}
+
+	/**
+	 * Takes a stopwatch the factory no longer holds out of its group.
+	 */
+	private static void forget(ManagedStopwatch watch) {
+		if (watch instanceof Stopwatch) {
+		  LapAggregate aggregate = ((Stopwatch) watch).getAggregate();
+		  StopwatchGroup group = aggregate == null ? null : groups.get(aggregate.getKey());
+		  if (group != null) {
+		    group.remove(watch);
+		  }
+		}
+	}
+
+	private static void recycle(IStopwatch watch) {
+		if (watch instanceof Stopwatch && ((Stopwatch) watch).isPooled()) {
+		  pool.release((Stopwatch) watch);
+		}
+	}
+
+	/**
+	 * Bounds the number of stopwatches the factory keeps.  When a new stopwatch
+	 * takes the factory over <code>maxWatches</code>, stopwatches are evicted
+	 * according to <code>policy</code> until about a tenth of the capacity is
+	 * free again.  OLDEST_STOPPED_FIRST never evicts a running stopwatch, so the
+	 * factory may stay over capacity while they all run; it then only looks
+	 * for stopwatches to evict again once another tenth of the capacity has
+	 * been created, so that each creation doesn't rescan the factory.
+	 * @param maxWatches The capacity, or 0 for no limit
+	 * @param policy Which stopwatches to evict first
+	 * @throws IllegalArgumentException if <code>maxWatches</code> is negative or
+	 *     <code>policy</code> is null.
+	 */
+	public static void setCapacity(int maxWatches, EvictionPolicy policy) {
+		if (maxWatches < 0) {
+		  throw new IllegalArgumentException("Error: capacity cannot be negative");
+		}
+		if (policy == null) {
+		  throw new IllegalArgumentException("Error: policy cannot be null");
+		}
+		evictionPolicy = policy;
+		capacity = maxWatches;
+		nextEvictionSize = 0;
+		maybeEvictOverCapacity(null);
+	}
+
+	/**
+	 * Makes the factory evict stopwatches that have been stopped (or never
+	 * started) for longer than <code>ttl</code>.  Expired stopwatches are
+	 * looked for at most every half <code>ttl</code> while stopwatches are
+	 * being created, and whenever evictExpired() is called.
+	 * @param ttl The time to live of a stopped stopwatch, or 0 to keep them forever
+	 * @param unit The unit of <code>ttl</code>
+	 * @throws IllegalArgumentException if <code>ttl</code> is negative or
+	 *     <code>unit</code> is null.
+	 */
+	public static void setStoppedTimeToLive(long ttl, TimeUnit unit) {
+		if (ttl < 0) {
+		  throw new IllegalArgumentException("Error: time to live cannot be negative");
+		}
+		if (unit == null) {
+		  throw new IllegalArgumentException("Error: unit cannot be null");
+		}
+		stoppedTtlNanos = unit.toNanos(ttl);
+	}
+
+	/**
+	 * Evicts every stopped stopwatch that has outlived the time to live set
+	 * with setStoppedTimeToLive.
+	 * @return the number of stopwatches evicted.
+	 */
+	public static int evictExpired() {
+		long ttl = stoppedTtlNanos;
+		if (ttl <= 0) {
+		  return 0;
+		}
+		lastExpiry = System.nanoTime();
+		int evicted = 0;
+		for (ManagedStopwatch watch : watchMap.values()) {
+		  if (!watch.isRunning() && watch.getIdleNanos() > ttl
+		      && watchMap.remove(watch.getId(), watch)) {
+		    forget(watch);
+		    evicted++;
+		  }
+		}
+		evictionCount.addAndGet(evicted);
+		return evicted;
+	}
+
+	private static void maybeExpire() {
+		long ttl = stoppedTtlNanos;
+		if (ttl > 0 && System.nanoTime() - lastExpiry > ttl / 2
+		    && evicting.compareAndSet(false, true)) {
+		  try {
+		    evictExpired();
+		  } finally {
+		    evicting.set(false);
+		  }
+		}
+	}
+
+	/**
+	 * Evicts stopwatches if the factory is over capacity.  The stopwatch just
+	 * created, if any, is never evicted: it hasn't been started yet, and
+	 * OLDEST_STOPPED_FIRST would otherwise drop it before its caller gets it.
+	 */
+	private static void maybeEvictOverCapacity(ManagedStopwatch created) {
+		int max = capacity;
+		int size = watchMap.size();
+		if (max <= 0 || size <= max || size < nextEvictionSize
+		    || !evicting.compareAndSet(false, true)) {
+		  return;
+		}
+		try {
+		  int batch = Math.max(1, max / 10);
+		  int excess = watchMap.size() - (max - max / 10);
+		  boolean stoppedOnly = evictionPolicy == EvictionPolicy.OLDEST_STOPPED_FIRST;
+		  List<EvictionCandidate> candidates = new ArrayList<>();
+		  for (ManagedStopwatch watch : watchMap.values()) {
+		    if (watch != created && (!stoppedOnly || !watch.isRunning())) {
+		      candidates.add(new EvictionCandidate(watch));
+		    }
 		  }
-    }
+		  Collections.sort(candidates, new Comparator<EvictionCandidate>() {
+		    @Override
+		    public int compare(EvictionCandidate a, EvictionCandidate b) {
+		      return Long.compare(b.idleNanos, a.idleNanos);
+		    }
+		  });
+		  int evicted = 0;
+		  for (int i = 0; i < candidates.size() && evicted < excess; i++) {
+		    ManagedStopwatch watch = candidates.get(i).watch;
+		    if ((!stoppedOnly || !watch.isRunning()) && watchMap.remove(watch.getId(), watch)) {
+		      forget(watch);
+		      evicted++;
+		    }
+		  }
+		  evictionCount.addAndGet(evicted);
+		  size = watchMap.size();
+		  nextEvictionSize = size > max ? size + batch : 0;
+		} finally {
+		  evicting.set(false);
+		}
+	}
+
+	/**
+	 * A stopwatch and its idle time, read once so that sorting sees fixed keys.
+	 */
+	private static final class EvictionCandidate {
+		final ManagedStopwatch watch;
+		final long idleNanos;
+
+		EvictionCandidate(ManagedStopwatch watch) {
+		  this.watch = watch;
+		  this.idleNanos = watch.getIdleNanos();
+		}
+	}
+
+	/**
+	 * Returns the in-flight, peak and throughput counters of the intervals
+	 * <code>watch</code> timed with begin() and end(), whatever its kind.
+	 * @param watch A stopwatch created by this factory
+	 * @throws IllegalArgumentException if <code>watch</code> is null or wasn't
+	 *     created by this factory.
+	 */
+	public static ConcurrencyGauge getConcurrencyGauge(IStopwatch watch) {
+		if (!(watch instanceof ManagedStopwatch)) {
+		  throw new IllegalArgumentException("Error: the stopwatch wasn't created by this factory");
+		}
+		return ((ManagedStopwatch) watch).getConcurrencyGauge();
 	}
 
 	/**
-	 * Returns a list of all created stopwatches
+	 * Returns the aggregate for <code>key</code>, creating an empty one if the
+	 * key is new.  Aggregates are kept for the life of the JVM, so keys should
+	 * name groups of stopwatches rather than single ones.
+	 * @param key The aggregate key
+	 * @return the aggregate shared by every stopwatch configured with <code>key</code>.
+	 * @throws IllegalArgumentException if <code>key</code> is empty or null.
+	 */
+	public static LapAggregate getAggregate(String key) {
+		if (key == null || key.trim().length() == 0) {
+		  throw new IllegalArgumentException("Error: aggregate key cannot be empty or null");
+		}
+		LapAggregate aggregate = aggregates.get(key);
+		if (aggregate == null) {
+		  LapAggregate created = new LapAggregate(key);
+		  aggregate = aggregates.putIfAbsent(key, created);
+		  if (aggregate == null) {
+		    aggregate = created;
+		  }
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Returns the group with the given name, creating an empty one if the
+	 * name is new.  The group's laps are aggregated under its name.
+	 * @param name The name of the group
+	 * @return the group.
+	 * @throws IllegalArgumentException if <code>name</code> is empty or null.
+	 */
+	public static StopwatchGroup getGroup(String name) {
+		if (name == null || name.trim().length() == 0) {
+		  throw new IllegalArgumentException("Error: group name cannot be empty or null");
+		}
+		StopwatchGroup group = groups.get(name);
+		if (group == null) {
+		  StopwatchGroup created = new StopwatchGroup(name);
+		  group = groups.putIfAbsent(name, created);
+		  if (group == null) {
+		    group = created;
+		  }
+		}
+		return group;
+	}
+
+	/**
+	 * Returns a list of all groups
+	 * @return a List of all created groups, sorted by name.
+	 */
+	public static List<StopwatchGroup> getGroups() {
+		List<StopwatchGroup> list = new ArrayList<>(groups.values());
+		Collections.sort(list, new Comparator<StopwatchGroup>() {
+		  @Override
+		  public int compare(StopwatchGroup a, StopwatchGroup b) {
+		    return a.getName().compareTo(b.getName());
+		  }
+		});
+		return list;
+	}
+
+	/**
+	 * Returns the count, sum, min and max of every aggregate, keyed by
+	 * aggregate key.  Costs one summary per key, however many laps were recorded.
+	 * @return a map of aggregate key to summary, sorted by key.
+	 */
+	public static Map<String, LapSummary> getAggregateSummaries() {
+		List<String> keys = new ArrayList<>(aggregates.keySet());
+		Collections.sort(keys);
+		Map<String, LapSummary> summaries = new LinkedHashMap<>();
+		for (String key : keys) {
+		  summaries.put(key, aggregates.get(key).getSummary());
+		}
+		return summaries;
+	}
+
+	/**
+	 * Returns the number of stopwatches the factory currently holds.
+	 * @return the number of live stopwatches.
+	 */
+	public static int getLiveStopwatchCount() {
+		return watchMap.size();
+	}
+
+	/**
+	 * Returns how many stopwatches have been evicted since the JVM started.
+	 * Released stopwatches are not counted.
+	 * @return the number of evicted stopwatches.
+	 */
+	public static long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Returns a list of all created stopwatches.  The list is a copy; to walk
+	 * many stopwatches without copying them use getStopwatchView() or
+	 * forEachStopwatch().
 	 * @return a List of all creates IStopwatch objects.  Returns an empty
 	 * list if no IStopwatches have been created.
 	 */
 	public static List<IStopwatch> getStopwatches() {
 		return new ArrayList<IStopwatch>(watchMap.values());
 	}
+
+	/**
+	 * Returns a live, read-only view of the factory's stopwatches.  Its
+	 * iterators are weakly consistent: they never throw
+	 * ConcurrentModificationException, see every stopwatch that stays in the
+	 * factory while they run, and may or may not see stopwatches added or
+	 * removed meanwhile.  Nothing is copied.
+	 * @return a view of all stopwatches.
+	 */
+	public static Collection<IStopwatch> getStopwatchView() {
+		return getStopwatchView(StopwatchState.ANY);
+	}
+
+	/**
+	 * Returns a live, read-only view of the stopwatches in the given state,
+	 * weakly consistent like getStopwatchView().  The state is checked as the
+	 * view is iterated, so size() walks every stopwatch.
+	 * @param state Which stopwatches to include
+	 * @return a view of the matching stopwatches.
+	 * @throws IllegalArgumentException if <code>state</code> is null.
+	 */
+	public static Collection<IStopwatch> getStopwatchView(final StopwatchState state) {
+		if (state == null) {
+		  throw new IllegalArgumentException("Error: state cannot be null");
+		}
+		if (state == StopwatchState.ANY) {
+		  return Collections.<IStopwatch>unmodifiableCollection(watchMap.values());
+		}
+		return new AbstractCollection<IStopwatch>() {
+		  @Override
+		  public Iterator<IStopwatch> iterator() {
+		    return new StateIterator(state);
+		  }
+
+		  @Override
+		  public int size() {
+		    return countStopwatches(state);
+		  }
+		};
+	}
+
+	/**
+	 * Calls <code>action</code> with every stopwatch in the given state,
+	 * walking the factory like getStopwatchView() without copying it.
+	 * @param state Which stopwatches to visit
+	 * @param action What to do with each stopwatch
+	 * @throws IllegalArgumentException if <code>state</code> or <code>action</code> is null.
+	 */
+	public static void forEachStopwatch(StopwatchState state, Consumer<? super IStopwatch> action) {
+		if (state == null || action == null) {
+		  throw new IllegalArgumentException("Error: state and action cannot be null");
+		}
+		for (ManagedStopwatch watch : watchMap.values()) {
+		  if (state.matches(watch)) {
+		    action.accept(watch);
+		  }
+		}
+	}
+
+	/**
+	 * Returns the number of stopwatches in the given state.  Walks every
+	 * stopwatch unless <code>state</code> is ANY.
+	 * @throws IllegalArgumentException if <code>state</code> is null.
+	 */
+	public static int countStopwatches(StopwatchState state) {
+		if (state == null) {
+		  throw new IllegalArgumentException("Error: state cannot be null");
+		}
+		if (state == StopwatchState.ANY) {
+		  return watchMap.size();
+		}
+		int count = 0;
+		for (ManagedStopwatch watch : watchMap.values()) {
+		  if (state.matches(watch)) {
+		    count++;
+		  }
+		}
+		return count;
+	}
+
+	/**
+	 * Takes a snapshot of every stopwatch in the factory.  The snapshots are
+	 * taken in parallel on the common fork-join pool, each stopwatch
+	 * summarized on its own, and then sorted by id in parallel.  SYNCHRONIZED
+	 * stopwatches are summarized from their running totals; LOCK_FREE and
+	 * STRIPED stopwatches copy their laps to summarize them.  Each snapshot is consistent for its own stopwatch; stopwatches
+	 * keep running and may be added or removed while the snapshot is taken.
+	 * @return the snapshots, sorted by id.
+	 */
+	public static List<StopwatchSnapshot> snapshotStopwatches() {
+		final ManagedStopwatch[] watches = watchMap.values().toArray(new ManagedStopwatch[0]);
+		StopwatchSnapshot[] snapshots = new StopwatchSnapshot[watches.length];
+		Arrays.parallelSetAll(snapshots, new IntFunction<StopwatchSnapshot>() {
+		  @Override
+		  public StopwatchSnapshot apply(int i) {
+		    return new StopwatchSnapshot(watches[i]);
+		  }
+		});
+		Arrays.parallelSort(snapshots, new Comparator<StopwatchSnapshot>() {
+		  @Override
+		  public int compare(StopwatchSnapshot a, StopwatchSnapshot b) {
+		    return a.getId().compareTo(b.getId());
+		  }
+		});
+		return Arrays.asList(snapshots);
+	}
+
+	/**
+	 * Writes one line per stopwatch, sorted by id, to <code>out</code>.  The
+	 * stopwatches are summarized in parallel as in snapshotStopwatches().
+	 * @param out Where to write the summaries
+	 * @return the number of stopwatches written.
+	 * @throws IOException if <code>out</code> throws one.
+	 */
+	public static int exportStopwatches(Appendable out) throws IOException {
+		List<StopwatchSnapshot> snapshots = snapshotStopwatches();
+		for (StopwatchSnapshot snapshot : snapshots) {
+		  out.append(snapshot.toString()).append('\n');
+		}
+		return snapshots.size();
+	}
+
+	/**
+	 * Walks the factory's stopwatches, skipping the ones not in a state.
+	 */
+	private static final class StateIterator implements Iterator<IStopwatch> {
+		private final Iterator<ManagedStopwatch> watches = watchMap.values().iterator();
+		private final StopwatchState state;
+		private ManagedStopwatch next;
+
+		StateIterator(StopwatchState state) {
+		  this.state = state;
+		}
+
+		@Override
+		public boolean hasNext() {
+		  while (next == null && watches.hasNext()) {
+		    ManagedStopwatch watch = watches.next();
+		    if (state.matches(watch)) {
+		      next = watch;
+		    }
+		  }
+		  return next != null;
+		}
+
+		@Override
+		public IStopwatch next() {
+		  if (!hasNext()) {
+		    throw new NoSuchElementException();
+		  }
+		  IStopwatch watch = next;
+		  next = null;
+		  return watch;
+		}
+
+		@Override
+		public void remove() {
+		  throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -0,0 +1,164 @@
+package com.estella.stopwatch.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+/**
+ * A named group of stopwatches, e.g. every "db.query" stopwatch.  Groups are
+ * created with {@link StopwatchFactory#getGroup(String)}.  A group's
+ * stopwatches are also registered with the factory under their own ids, and
+ * every lap they record is added to the {@link LapAggregate} named after the
+ * group.  A group can be iterated, aggregated and cleared without scanning
+ * the factory's other stopwatches.
+ *
+ * A group can be capped at a number of stopwatches; with a lap retention in
+ * their StopwatchConfig this also caps the memory the group's laps take.
+ */
+public class StopwatchGroup {
+  private final String name;
+  private final ConcurrentHashMap<String, ManagedStopwatch> members;
+  /** The number of members plus the stopwatches being added. */
+  private final AtomicInteger reserved;
+  private volatile int capacity;
+
+  StopwatchGroup(String name) {
+    this.name = name;
+    members = new ConcurrentHashMap<>();
+    reserved = new AtomicInteger();
+    capacity = 0;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Creates a stopwatch in this group with the default configuration.
+   * @see #getStopwatch(String, StopwatchConfig)
+   */
+  public IStopwatch getStopwatch(String id) {
+    return getStopwatch(id, StopwatchConfig.defaults());
+  }
+
+  /**
+   * Creates a stopwatch in this group.  Its laps are aggregated under the
+   * group's name, whatever aggregate key <code>config</code> names.
+   * @param id The identifier of the new stopwatch, unique across the factory
+   * @param config The lap storage to use; must be a SYNCHRONIZED stopwatch
+   * @return The new IStopwatch object
+   * @throws IllegalArgumentException if <code>id</code> is empty, null, or already
+   *     taken, or if <code>config</code> is null or inconsistent.
+   * @throws IllegalStateException if the group is at its capacity.
+   */
+  public IStopwatch getStopwatch(String id, StopwatchConfig config) {
+    if (config == null) {
+      throw new IllegalArgumentException("Error: config cannot be null");
+    }
+    int max = capacity;
+    if (reserved.incrementAndGet() > max && max > 0) {
+      reserved.decrementAndGet();
+      throw new IllegalStateException("Sorry, the group " + name + " is full.");
+    }
+    boolean added = false;
+    try {
+      ManagedStopwatch watch = StopwatchFactory.newStopwatch(id, config.withAggregate(name));
+      if (members.putIfAbsent(id, watch) != null) {
+        throw new IllegalArgumentException("This id has already been taken.");
+      }
+      try {
+        StopwatchFactory.register(id, watch);
+      } catch (IllegalArgumentException e) {
+        members.remove(id, watch);
+        throw e;
+      }
+      added = true;
+      return watch;
+    } finally {
+      if (!added) {
+        reserved.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Forgets a stopwatch the factory has released or evicted.
+   */
+  void remove(ManagedStopwatch watch) {
+    if (members.remove(watch.getId(), watch)) {
+      reserved.decrementAndGet();
+    }
+  }
+
+  /**
+   * Limits the number of stopwatches in the group.  Stopwatches already in
+   * the group are kept, but no new ones can be added while the group is over
+   * capacity.
+   * @param maxWatches The capacity, or 0 for no limit
+   * @throws IllegalArgumentException if <code>maxWatches</code> is negative.
+   */
+  public void setCapacity(int maxWatches) {
+    if (maxWatches < 0) {
+      throw new IllegalArgumentException("Error: capacity cannot be negative");
+    }
+    capacity = maxWatches;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of stopwatches in the group.
+   */
+  public int size() {
+    return members.size();
+  }
+
+  /**
+   * Returns the stopwatch with the given id if it belongs to this group.
+   * @return the stopwatch, or null if the group has no stopwatch with this id.
+   */
+  public IStopwatch find(String id) {
+    return id == null ? null : members.get(id);
+  }
+
+  /**
+   * Returns a list of the group's stopwatches.
+   * @return a List of the group's IStopwatch objects, or an empty list.
+   */
+  public List<IStopwatch> getStopwatches() {
+    return new ArrayList<IStopwatch>(members.values());
+  }
+
+  /**
+   * Returns the running totals of every lap recorded by the group's stopwatches.
+   */
+  public LapAggregate getAggregate() {
+    return StopwatchFactory.getAggregate(name);
+  }
+
+  /**
+   * Releases every stopwatch in the group from the factory and clears the
+   * group's aggregate.  The group itself stays and can be filled again.
+   * @return the number of stopwatches released.
+   */
+  public int clear() {
+    int released = 0;
+    for (ManagedStopwatch watch : members.values()) {
+      if (StopwatchFactory.releaseStopwatch(watch)) {
+        released++;
+      }
+    }
+    getAggregate().clear();
+    return released;
+  }
+
+  @Override
+  public String toString() {
+    return "Group " + name + " - " + size() + " stopwatches, " + getAggregate().getSummary();
+  }
+}
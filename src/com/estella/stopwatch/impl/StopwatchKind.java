@@ -0,0 +1,33 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * The IStopwatch implementations that StopwatchFactory can create.
+ */
+public enum StopwatchKind {
+  /**
+   * {@link Stopwatch}: every operation takes the watch's lock.  The lock is a
+   * ReentrantLock rather than a monitor, so a virtual thread waiting for it
+   * unmounts instead of pinning its carrier thread.
+   */
+  SYNCHRONIZED,
+  /** {@link LockFreeStopwatch}: state and laps are updated with CAS only; nothing ever waits. */
+  LOCK_FREE,
+  /** {@link StripedStopwatch}: laps go to per-thread stripes and are merged on read. */
+  STRIPED;
+
+  /**
+   * Creates a new, stopped IStopwatch of this kind that reads the time from
+   * <code>timeSource</code>.
+   * @throws IllegalArgumentException if <code>id</code> is empty or null.
+   */
+  ManagedStopwatch newStopwatch(String id, TimeSource timeSource) {
+    switch (this) {
+      case LOCK_FREE:
+        return new LockFreeStopwatch(id, timeSource);
+      case STRIPED:
+        return new StripedStopwatch(id, timeSource);
+      default:
+        return new Stopwatch(id, false, StopwatchConfig.defaults(), timeSource);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.estella.stopwatch.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free pool of released stopwatches.  Stopwatches sit in a
+ * fixed array of slots that are claimed and filled with compare-and-set, so
+ * taking a stopwatch from the pool or putting one back never allocates.
+ * Each thread starts looking at a different slot to spread contention.
+ * A pool only keeps stopwatches that read the time from its time source.
+ */
+class StopwatchPool {
+  private final AtomicReferenceArray<Stopwatch> slots;
+  private final TimeSource timeSource;
+
+  StopwatchPool(int capacity, TimeSource timeSource) {
+    slots = new AtomicReferenceArray<>(capacity);
+    this.timeSource = timeSource;
+  }
+
+  int capacity() {
+    return slots.length();
+  }
+
+  /**
+   * Returns the time source of the stopwatches this pool keeps.
+   */
+  TimeSource timeSource() {
+    return timeSource;
+  }
+
+  private int firstSlot() {
+    long h = Thread.currentThread().getId();
+    return (int) ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % slots.length();
+  }
+
+  /**
+   * Takes a stopwatch out of the pool.
+   * @return a released stopwatch, or null if the pool is empty.
+   */
+  Stopwatch acquire() {
+    int n = slots.length();
+    if (n == 0) {
+      return null;
+    }
+    int start = firstSlot();
+    for (int i = 0; i < n; i++) {
+      int slot = (start + i) % n;
+      Stopwatch watch = slots.get(slot);
+      if (watch != null && slots.compareAndSet(slot, watch, null)) {
+        return watch;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Puts a released stopwatch back into the pool.
+   * @return false if the pool is full or the stopwatch reads another time
+   *     source, and the stopwatch was dropped.
+   */
+  boolean release(Stopwatch watch) {
+    int n = slots.length();
+    if (n == 0 || watch.getTimeSource() != timeSource) {
+      return false;
+    }
+    int start = firstSlot();
+    for (int i = 0; i < n; i++) {
+      int slot = (start + i) % n;
+      if (slots.get(slot) == null && slots.compareAndSet(slot, null, watch)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,35 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * An immutable summary of one stopwatch at the time it was taken: its id,
+ * whether it was running and the count, sum, min and max of its laps.
+ * Produced in bulk by {@link StopwatchFactory#snapshotStopwatches()}.
+ */
+public final class StopwatchSnapshot {
+  private final String id;
+  private final boolean running;
+  private final LapSummary laps;
+
+  StopwatchSnapshot(ManagedStopwatch watch) {
+    id = watch.getId();
+    running = watch.isRunning();
+    laps = watch.getLapSummary();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public LapSummary getLaps() {
+    return laps;
+  }
+
+  @Override
+  public String toString() {
+    return id + " (" + (running ? "running" : "stopped") + ") - " + laps;
+  }
+}
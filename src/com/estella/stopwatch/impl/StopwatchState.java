@@ -0,0 +1,18 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * Selects stopwatches by whether they are running when StopwatchFactory
+ * walks its stopwatches.
+ */
+public enum StopwatchState {
+  /** Every stopwatch, running or not. */
+  ANY,
+  /** Only stopwatches that are running. */
+  RUNNING,
+  /** Only stopwatches that are stopped or were never started. */
+  STOPPED;
+
+  boolean matches(ManagedStopwatch watch) {
+    return this == ANY || watch.isRunning() == (this == RUNNING);
+  }
+}
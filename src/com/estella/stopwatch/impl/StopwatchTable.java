@@ -0,0 +1,645 @@
+package com.estella.stopwatch.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+/**
+ * A table of many small stopwatches kept in parallel primitive arrays and
+ * addressed by int handles.  A stopwatch in the table costs a state byte, a
+ * generation int and six longs (the last lap time, the lap number the last
+ * reset started at and the count, sum, min and max of the laps) plus an id
+ * reference, about 60 bytes, instead of a Stopwatch object with its own lock
+ * and lap buffer.  Only the aggregates of the laps are kept, not the laps.
+ * <pre>
+ *   int handle = table.create("request 42");
+ *   table.start(handle);
+ *   table.lap(handle);
+ *   table.stop(handle);
+ *   LapSummary laps = table.getLapSummary(handle);
+ *   table.release(handle);
+ * </pre>
+ * view() wraps a handle in an IStopwatch when one is needed.  Released
+ * handles are reused; a view of a released stopwatch throws rather than
+ * touching the stopwatch that reuses its handle.
+ *
+ * The table is thread-safe.  Stopwatches are guarded by a fixed set of
+ * striped locks picked by handle, so different stopwatches rarely contend.
+ * Handles are handed out and released without a table-wide lock: released
+ * handles sit on a lock-free stack and new ones are claimed with a
+ * compareAndSet, so only growing the arrays takes a lock.
+ * Stopwatches in a table are not registered with StopwatchFactory.
+ */
+public class StopwatchTable {
+  private static final byte FREE = 0;
+  private static final byte STOPPED = 1;
+  private static final byte RUNNING = 2;
+  /** Stopped with a final lap in lastTimes, which start() resumes. */
+  private static final byte PENDING = 3;
+  private static final int STRIPES = 64;
+  private static final int ANY_GENERATION = -1;
+
+  private final String name;
+  private final TimeSource timeSource;
+  /** Guards growing the arrays. */
+  private final ReentrantLock growLock;
+  private final ReentrantLock[] stripes;
+  /** The length of the arrays, which only grows. */
+  private volatile int capacity;
+  private String[] ids;
+  private byte[] states;
+  /** Bumped on every release so that views of a released stopwatch can tell. */
+  private int[] generations;
+  /** The time of the last lap while running, the final lap while PENDING. */
+  private long[] lastTimes;
+  /** The lap number of the first lap since the last reset. */
+  private long[] firstLapNumbers;
+  private long[] counts;
+  private long[] sums;
+  private long[] mins;
+  private long[] maxes;
+  /**
+   * The top of the stack of released handles: a version in the high 32 bits,
+   * bumped on every push and pop so that a compareAndSet against a stale top
+   * fails, and the handle plus one in the low 32 bits, or 0 if the stack is
+   * empty.  A released handle keeps the entry below it in its lastTimes slot.
+   */
+  private final AtomicLong freeTop;
+  /** The number of handles ever handed out; handles above it were never used. */
+  private final AtomicInteger used;
+  private final LongAdder live;
+
+  /**
+   * Constructs an empty table that reads the system time.
+   * @throws IllegalArgumentException if <code>name</code> is empty or null.
+   */
+  public StopwatchTable(String name) {
+    this(name, 1024, SystemTimeSource.INSTANCE);
+  }
+
+  /**
+   * Constructs an empty table with room for <code>capacity</code> stopwatches
+   * that reads the time from <code>timeSource</code>.  The table grows as needed.
+   * @throws IllegalArgumentException if <code>name</code> is empty or null,
+   *     <code>capacity</code> is not positive or <code>timeSource</code> is null.
+   */
+  public StopwatchTable(String name, int capacity, TimeSource timeSource) {
+    if (name == null || name.trim().length() == 0) {
+      throw new IllegalArgumentException("Error: name cannot be empty or null.");
+    }
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Error: capacity must be positive.");
+    }
+    if (timeSource == null) {
+      throw new IllegalArgumentException("Error: time source cannot be null");
+    }
+    this.name = name;
+    this.timeSource = timeSource;
+    growLock = new ReentrantLock();
+    stripes = new ReentrantLock[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    ids = new String[capacity];
+    states = new byte[capacity];
+    generations = new int[capacity];
+    lastTimes = new long[capacity];
+    firstLapNumbers = new long[capacity];
+    counts = new long[capacity];
+    sums = new long[capacity];
+    mins = new long[capacity];
+    maxes = new long[capacity];
+    this.capacity = capacity;
+    freeTop = new AtomicLong();
+    used = new AtomicInteger();
+    live = new LongAdder();
+  }
+
+  /**
+   * Doubles the arrays.  Must be called while holding <code>growLock</code>;
+   * takes every stripe lock so that no stopwatch is in use meanwhile.
+   */
+  private void grow() {
+    for (ReentrantLock stripe : stripes) {
+      stripe.lock();
+    }
+    try {
+      int capacity = states.length * 2;
+      if (capacity < 0) {
+        throw new IllegalStateException("Sorry, the stopwatch table is full.");
+      }
+      ids = Arrays.copyOf(ids, capacity);
+      states = Arrays.copyOf(states, capacity);
+      generations = Arrays.copyOf(generations, capacity);
+      lastTimes = Arrays.copyOf(lastTimes, capacity);
+      firstLapNumbers = Arrays.copyOf(firstLapNumbers, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+      sums = Arrays.copyOf(sums, capacity);
+      mins = Arrays.copyOf(mins, capacity);
+      maxes = Arrays.copyOf(maxes, capacity);
+      this.capacity = capacity;
+    } finally {
+      for (ReentrantLock stripe : stripes) {
+        stripe.unlock();
+      }
+    }
+  }
+
+  private ReentrantLock stripeOf(int handle) {
+    return stripes[handle & (STRIPES - 1)];
+  }
+
+  /**
+   * Locks the stripe of <code>handle</code> after checking that it is a live
+   * stopwatch of the given generation.  The caller must unlock it.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   * @throws IllegalStateException if the view's stopwatch was released.
+   */
+  private ReentrantLock enter(int handle, int generation) {
+    ReentrantLock stripe = stripeOf(handle);
+    stripe.lock();
+    if (handle < 0 || handle >= used.get() || states[handle] == FREE
+        || (generation != ANY_GENERATION && generations[handle] != generation)) {
+      stripe.unlock();
+      if (generation != ANY_GENERATION) {
+        throw new IllegalStateException("Sorry, this stopwatch was released.");
+      }
+      throw new IllegalArgumentException("Error: " + handle + " is not a live stopwatch handle");
+    }
+    return stripe;
+  }
+
+  private long now() {
+    return timeSource.nanoTime();
+  }
+
+  /**
+   * Adds a lap to the aggregates.  Must be called while holding the stripe lock.
+   */
+  private void fold(int handle, long lap) {
+    counts[handle]++;
+    sums[handle] += lap;
+    mins[handle] = Math.min(mins[handle], lap);
+    maxes[handle] = Math.max(maxes[handle], lap);
+  }
+
+  /**
+   * Clears the laps.  Must be called while holding the stripe lock.
+   */
+  private void clear(int handle) {
+    counts[handle] = 0;
+    sums[handle] = 0;
+    mins[handle] = Long.MAX_VALUE;
+    maxes[handle] = 0;
+    lastTimes[handle] = 0;
+  }
+
+  /**
+   * Adds a new, stopped stopwatch named <code>id</code> to the table.
+   * @param id The identifier of the stopwatch, or null to name it after the
+   *     table and its handle without storing a string
+   * @return the handle of the new stopwatch.
+   * @throws IllegalArgumentException if <code>id</code> is empty.
+   */
+  public int create(String id) {
+    if (id != null && id.trim().length() == 0) {
+      throw new IllegalArgumentException("Error: id cannot be empty.");
+    }
+    int handle = popFreeHandle();
+    if (handle < 0) {
+      handle = claimNewHandle();
+    }
+    ReentrantLock stripe = stripeOf(handle);
+    stripe.lock();
+    try {
+      ids[handle] = id;
+      states[handle] = STOPPED;
+      firstLapNumbers[handle] = 0;
+      clear(handle);
+    } finally {
+      stripe.unlock();
+    }
+    live.increment();
+    return handle;
+  }
+
+  private static long nextTop(long top, int handlePlusOne) {
+    return ((top >>> 32) + 1) << 32 | (handlePlusOne & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Takes a released handle off the stack, or returns -1 if there is none.
+   * The entry below it is read under the handle's stripe lock, which is
+   * where release() wrote it.
+   */
+  private int popFreeHandle() {
+    while (true) {
+      long top = freeTop.get();
+      int handle = (int) top - 1;
+      if (handle < 0) {
+        return -1;
+      }
+      ReentrantLock stripe = stripeOf(handle);
+      stripe.lock();
+      try {
+        if (freeTop.compareAndSet(top, nextTop(top, (int) lastTimes[handle]))) {
+          return handle;
+        }
+      } finally {
+        stripe.unlock();
+      }
+    }
+  }
+
+  /**
+   * Claims a handle that was never used, growing the arrays if they are full.
+   */
+  private int claimNewHandle() {
+    while (true) {
+      int handle = used.get();
+      if (handle < capacity) {
+        if (used.compareAndSet(handle, handle + 1)) {
+          return handle;
+        }
+      } else {
+        growLock.lock();
+        try {
+          if (used.get() >= capacity) {
+            grow();
+          }
+        } finally {
+          growLock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes a stopwatch from the table so that its handle can be reused.
+   * Views of it throw IllegalStateException from then on.
+   * @return true if <code>handle</code> was a live stopwatch.
+   */
+  public boolean release(int handle) {
+    if (handle < 0 || handle >= used.get()) {
+      return false;
+    }
+    ReentrantLock stripe = stripeOf(handle);
+    stripe.lock();
+    try {
+      if (states[handle] == FREE) {
+        return false;
+      }
+      states[handle] = FREE;
+      generations[handle]++;
+      ids[handle] = null;
+      long top;
+      do {
+        top = freeTop.get();
+        lastTimes[handle] = (int) top;
+      } while (!freeTop.compareAndSet(top, nextTop(top, handle + 1)));
+    } finally {
+      stripe.unlock();
+    }
+    live.decrement();
+    return true;
+  }
+
+  /**
+   * Returns the number of live stopwatches in the table.  While other
+   * threads create or release stopwatches, the count may be a moment old.
+   */
+  public int size() {
+    return (int) live.sum();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getId(int handle) {
+    return getId(handle, ANY_GENERATION);
+  }
+
+  private String getId(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      return ids[handle] != null ? ids[handle] : name + "#" + handle;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Starts the stopwatch.  If it was stopped, its final lap keeps counting
+   * from where it left off.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   * @throws IllegalStateException if the stopwatch is already running
+   */
+  public void start(int handle) {
+    start(handle, ANY_GENERATION);
+  }
+
+  private void start(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      if (states[handle] == RUNNING) {
+        throw new IllegalStateException("The stopwatch is already running.");
+      }
+      long now = now();
+      lastTimes[handle] = states[handle] == PENDING ? now - lastTimes[handle] : now;
+      states[handle] = RUNNING;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Adds the time elapsed since the last lap, or since start(), to the
+   * stopwatch's laps.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   * @throws IllegalStateException if the stopwatch isn't running
+   */
+  public void lap(int handle) {
+    lap(handle, ANY_GENERATION);
+  }
+
+  private void lap(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      if (states[handle] != RUNNING) {
+        throw new IllegalStateException("Sorry, the stopwatch isn't running.");
+      }
+      long now = now();
+      fold(handle, now - lastTimes[handle]);
+      lastTimes[handle] = now;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Stops the stopwatch.  Its final lap is held back so that a later start()
+   * can resume it, and is counted as a lap meanwhile.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   * @throws IllegalStateException if the stopwatch isn't running
+   */
+  public void stop(int handle) {
+    stop(handle, ANY_GENERATION);
+  }
+
+  private void stop(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      if (states[handle] != RUNNING) {
+        throw new IllegalStateException("Sorry, the stopwatch isn't running.");
+      }
+      lastTimes[handle] = now() - lastTimes[handle];
+      states[handle] = PENDING;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Stops the stopwatch if it is running and clears its laps.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   */
+  public void reset(int handle) {
+    reset(handle, ANY_GENERATION);
+  }
+
+  private void reset(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      firstLapNumbers[handle] = endLapNumber(handle);
+      clear(handle);
+      states[handle] = STOPPED;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Begins timing an interval on any stopwatch of the table.  Only reads the clock.
+   * @return a token to pass to end().
+   */
+  public long begin() {
+    return now();
+  }
+
+  /**
+   * Adds the length of an interval begun with begin() to the stopwatch's
+   * laps, whether or not it is running.  On a stopped stopwatch the final
+   * lap is counted for good first, so a later start() begins a new lap.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live
+   *     stopwatch or <code>token</code> is later than now.
+   */
+  public void end(int handle, long token) {
+    end(handle, ANY_GENERATION, token);
+  }
+
+  private void end(int handle, int generation, long token) {
+    long lap = now() - token;
+    if (lap < 0) {
+      throw new IllegalArgumentException("Error: token is not from this table's begin()");
+    }
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      if (states[handle] == PENDING) {
+        fold(handle, lastTimes[handle]);
+        lastTimes[handle] = 0;
+        states[handle] = STOPPED;
+      }
+      fold(handle, lap);
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Check whether the stopwatch is running
+   * @return true - is running, false - not running.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   */
+  public boolean isRunning(int handle) {
+    return isRunning(handle, ANY_GENERATION);
+  }
+
+  private boolean isRunning(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      return states[handle] == RUNNING;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Returns the count, sum, min and max of the laps since the last reset,
+   * including the final lap of a stopped stopwatch.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   */
+  public LapSummary getLapSummary(int handle) {
+    return getLapSummary(handle, ANY_GENERATION);
+  }
+
+  private LapSummary getLapSummary(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      long count = counts[handle];
+      long sum = sums[handle];
+      long min = mins[handle];
+      long max = maxes[handle];
+      if (states[handle] == PENDING) {
+        long lap = lastTimes[handle];
+        count++;
+        sum += lap;
+        min = Math.min(min, lap);
+        max = Math.max(max, lap);
+      }
+      return count == 0 ? LapSummary.EMPTY : new LapSummary(count, sum, min, max);
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Returns the lap number after the last lap.  Must be called while holding
+   * the stripe lock.
+   */
+  private long endLapNumber(int handle) {
+    return firstLapNumbers[handle] + counts[handle] + (states[handle] == PENDING ? 1 : 0);
+  }
+
+  /**
+   * Returns the lap number after the last finished lap: the final lap of a
+   * stopped stopwatch isn't counted while start() may still continue it.
+   */
+  private long getEndLapNumber(int handle, int generation) {
+    ReentrantLock stripe = enter(handle, generation);
+    try {
+      return firstLapNumbers[handle] + counts[handle];
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Returns an IStopwatch backed by the stopwatch at <code>handle</code>.
+   * The view is a small object holding only the handle; create one when an
+   * IStopwatch is needed rather than keeping one per stopwatch.  Since the
+   * table keeps no individual laps, the view's getLapTimes() is always empty.
+   * @throws IllegalArgumentException if <code>handle</code> is not a live stopwatch.
+   */
+  public IStopwatch view(int handle) {
+    ReentrantLock stripe = enter(handle, ANY_GENERATION);
+    try {
+      return new View(handle, generations[handle]);
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "StopwatchTable " + name + " - " + size() + " stopwatches";
+  }
+
+  /**
+   * An IStopwatch over one stopwatch of the table.  Every call throws
+   * IllegalStateException once the stopwatch is released.
+   */
+  private final class View implements IStopwatch {
+    private final int handle;
+    private final int generation;
+
+    View(int handle, int generation) {
+      this.handle = handle;
+      this.generation = generation;
+    }
+
+    @Override
+    public String getId() {
+      return StopwatchTable.this.getId(handle, generation);
+    }
+
+    @Override
+    public void start() {
+      StopwatchTable.this.start(handle, generation);
+    }
+
+    @Override
+    public void lap() {
+      StopwatchTable.this.lap(handle, generation);
+    }
+
+    @Override
+    public void stop() {
+      StopwatchTable.this.stop(handle, generation);
+    }
+
+    @Override
+    public void reset() {
+      StopwatchTable.this.reset(handle, generation);
+    }
+
+    @Override
+    public long begin() {
+      return StopwatchTable.this.begin();
+    }
+
+    @Override
+    public void end(long token) {
+      StopwatchTable.this.end(handle, generation, token);
+    }
+
+    /**
+     * Returns an empty list: the table keeps only the aggregates of the laps.
+     */
+    @Override
+    public List<Long> getLapTimes() {
+      return Collections.emptyList();
+    }
+
+    /**
+     * Adds nothing, since the table keeps no individual laps, but returns the
+     * lap number after the last finished lap like any other stopwatch.
+     */
+    @Override
+    public long getLapTimesSince(long sequence, List<Long> laps) {
+      return getEndLapNumber(handle, generation);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof View)) {
+        return false;
+      }
+      View other = (View) o;
+      return other.table() == StopwatchTable.this && other.handle == handle
+          && other.generation == generation;
+    }
+
+    private StopwatchTable table() {
+      return StopwatchTable.this;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * handle + generation;
+    }
+
+    @Override
+    public String toString() {
+      return "Stopwatch Id - " + getId() + "\n"
+          + "Stopwatch State - " + (isRunning(handle, generation) ? "running" : "stop (not running)")
+          + "\n" + "Laps - " + getLapSummary(handle, generation) + "\n";
+    }
+  }
+}
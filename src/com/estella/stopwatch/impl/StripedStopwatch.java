@@ -0,0 +1,471 @@
+package com.estella.stopwatch.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An IStopwatch for watches that many threads lap at once and that are read
+ * rarely.  lap() only appends the current time to a buffer picked by the
+ * calling thread, so lapping threads share no written state.  The durations
+ * are worked out when the laps are read: all stripes are merged, sorted by
+ * time and the differences between neighbours become the lap times.
+ *
+ * start(), stop() and reset() still take the watch's lock.  Time spent
+ * stopped is tracked as an offset, so timestamps recorded after a restart
+ * continue the final lap just as {@link Stopwatch} does.
+ *
+ * Intervals timed with begin() and end() have no place on the timeline, so
+ * each stripe also keeps their lengths, together with the point on the
+ * timeline where they ended.  On read they are merged with the timeline's
+ * laps by that point, so laps and intervals come out in the order they
+ * were recorded.
+ */
+public class StripedStopwatch implements ManagedStopwatch {
+  private static final int STRIPE_COUNT = stripeCount();
+  /**
+   * lap() only moves lastStateChange once it is this stale, so that lapping
+   * threads mostly read the shared field rather than all writing it.
+   */
+  private static final long LAST_USE_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final String id;
+  private final ReentrantLock lock;
+  private final Stripe[] stripes;
+  private volatile boolean running;
+  /** Nanoseconds spent stopped since the first start; subtracted from every timestamp. */
+  private volatile long pausedNanos;
+  private volatile long lastStateChange;
+  private final TimeSource timeSource;
+  private final ConcurrencyGauge gauge;
+  private volatile boolean started;
+  private long startTime;
+  private volatile long stopTime;
+  /** Set when end() closed the final lap of the stopped stopwatch, so start() won't resume it. */
+  private boolean finalLapClosed;
+  /** The number of the first lap since the last reset. */
+  private long firstLapNumber;
+
+  /**
+   * A buffer of lap timestamps for the threads hashed to it, and of the
+   * intervals they ended, padded so that neighbouring stripes don't share
+   * a cache line.
+   */
+  @SuppressWarnings("unused")
+  private static final class Stripe extends LapBuffer {
+    final ReentrantLock lock = new ReentrantLock();
+    /** Where on the timeline each interval ended. */
+    final LapBuffer intervalEnds = new LapBuffer();
+    final LapBuffer intervalLengths = new LapBuffer();
+    private long p1, p2, p3, p4, p5, p6, p7;
+  }
+
+  private static int stripeCount() {
+    int n = 1;
+    while (n < 2 * Runtime.getRuntime().availableProcessors() && n < 64) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  /**
+   * Constructs a new striped stopwatch with the id that reads the time from
+   * <code>timeSource</code>.
+   * @throws IllegalArgumentException if <code>id</code> is empty or null.
+   */
+  StripedStopwatch(String id, TimeSource timeSource) {
+    if (id == null || id.trim().length() == 0) {
+      throw new IllegalArgumentException("Error: id cannot be empty or null.");
+    }
+    this.id = id;
+    this.timeSource = timeSource;
+    lock = new ReentrantLock();
+    stripes = new Stripe[STRIPE_COUNT];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+    lastStateChange = getCurTimeInNanoSec();
+    gauge = new ConcurrencyGauge(timeSource);
+  }
+
+  private long getCurTimeInNanoSec() {
+    return timeSource.nanoTime();
+  }
+
+  private Stripe stripeForCurrentThread() {
+    long h = Thread.currentThread().getId();
+    h ^= h >>> 16;
+    return stripes[(int) h & (stripes.length - 1)];
+  }
+
+  /**
+   * Check whether the stopwatch is running
+   * @return true - is running, false - not running.
+   */
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Returns how long ago the stopwatch was last created, started, lapped,
+   * stopped or reset, or ended an interval begun with begin().  Laps and
+   * intervals are only noted to within a millisecond.
+   * @return the idle time in nanoseconds, as measured by the stopwatch's time source.
+   */
+  @Override
+  public long getIdleNanos() {
+    return getCurTimeInNanoSec() - lastStateChange;
+  }
+
+  /**
+   * Returns the Id of this stopwatch
+   * @return the Id of this stopwatch.  Will never be empty or null.
+   */
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Starts the stopwatch.
+   * @throws IllegalStateException if called when the stopwatch is already running
+   */
+  @Override
+  public void start() {
+    lock.lock();
+    try {
+      if (running) {
+        throw new IllegalStateException("The stopwatch is already running.");
+      }
+      long now = getCurTimeInNanoSec();
+      if (started) {
+        if (finalLapClosed) {
+          // Mark the end of the closed lap so the next lap is timed from here.
+          addTimestamp(stopTime);
+          finalLapClosed = false;
+        }
+        pausedNanos = now - stopTime;
+      } else {
+        started = true;
+        pausedNanos = 0;
+        startTime = now;
+      }
+      running = true;
+      lastStateChange = now;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stores the time elapsed since the last time lap() was called
+   * or since start() was called if this is the first lap.  Only the
+   * timestamp is stored here; the elapsed time is computed on read.
+   * @throws IllegalStateException if called when the stopwatch isn't running
+   */
+  @Override
+  public void lap() {
+    if (!running) {
+      throw new IllegalStateException("Sorry, the stopwatch isn't running.");
+    }
+    long now = getCurTimeInNanoSec();
+    addTimestamp(now - pausedNanos);
+    markUsed(now);
+  }
+
+  private void markUsed(long now) {
+    if (now - lastStateChange >= LAST_USE_RESOLUTION_NANOS) {
+      lastStateChange = now;
+    }
+  }
+
+  private void addTimestamp(long time) {
+    Stripe stripe = stripeForCurrentThread();
+    stripe.lock.lock();
+    try {
+      stripe.add(time);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  private void addInterval(long end, long length) {
+    Stripe stripe = stripeForCurrentThread();
+    stripe.lock.lock();
+    try {
+      stripe.intervalEnds.add(end);
+      stripe.intervalLengths.add(length);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /**
+   * Begins timing an interval.  Only reads the clock and counts the interval
+   * as in flight.
+   * @return a token to pass to end().
+   */
+  @Override
+  public long begin() {
+    gauge.begin();
+    return getCurTimeInNanoSec();
+  }
+
+  /**
+   * Ends an interval begun with begin() and stores its length as a lap,
+   * whether or not the stopwatch is running.  While it runs, the length
+   * goes to the calling thread's stripe like a lap() timestamp does.  On a
+   * stopped stopwatch this takes the watch's lock and closes the final lap,
+   * so a later start() begins a new lap instead of resuming it.
+   * @param token the value returned by begin()
+   * @throws IllegalArgumentException if <code>token</code> is later than now.
+   */
+  @Override
+  public void end(long token) {
+    long now = getCurTimeInNanoSec();
+    long lap = now - token;
+    if (lap < 0) {
+      gauge.cancel();
+      throw new IllegalArgumentException("Error: token is not from this stopwatch's begin()");
+    }
+    if (running) {
+      addInterval(now - pausedNanos, lap);
+    } else {
+      lock.lock();
+      try {
+        if (running) {
+          addInterval(now - pausedNanos, lap);
+        } else if (started) {
+          finalLapClosed = true;
+          addInterval(stopTime, lap);
+        } else {
+          addInterval(now, lap);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    markUsed(now);
+    gauge.end(lap);
+  }
+
+  /**
+   * Returns the in-flight, peak and throughput counters of the intervals
+   * timed with begin() and end().  The counters are live.
+   */
+  @Override
+  public ConcurrencyGauge getConcurrencyGauge() {
+    return gauge;
+  }
+
+  /**
+   * Stops the stopwatch (and records one final lap).
+   * @throws IllegalStateException if called when the stopwatch isn't running
+   */
+  @Override
+  public void stop() {
+    lock.lock();
+    try {
+      if (!running) {
+        throw new IllegalStateException("Sorry, the stopwatch isn't running.");
+      }
+      long now = getCurTimeInNanoSec();
+      stopTime = now - pausedNanos;
+      running = false;
+      lastStateChange = now;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Resets the stopwatch.  If the stopwatch is running, this method stops the
+   * watch and resets it.  This also clears all recorded laps.
+   */
+  @Override
+  public void reset() {
+    lock.lock();
+    try {
+      firstLapNumber += getLapTimeArray().length;
+      running = false;
+      started = false;
+      finalLapClosed = false;
+      for (Stripe stripe : stripes) {
+        stripe.lock.lock();
+        try {
+          stripe.clear();
+          stripe.intervalEnds.clear();
+          stripe.intervalLengths.clear();
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+      gauge.reset();
+      lastStateChange = getCurTimeInNanoSec();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a list of lap times (in milliseconds).  This method can be called at
+   * any time and will not throw an exception.
+   * @return a list of recorded lap times or an empty list if no times are recorded.
+   */
+  @Override
+  public List<Long> getLapTimes() {
+    return new LapTimeList(getLapTimeArray());
+  }
+
+  /**
+   * Returns the count, sum, min and max of the recorded lap times.  This
+   * merges and copies the laps, as getLapTimeArray() does.
+   */
+  @Override
+  public LapSummary getLapSummary() {
+    return LapSummary.of(getLapTimeArray());
+  }
+
+  /**
+   * Returns a copy of the recorded lap times (in nanoseconds) as a primitive array.
+   * This merges and sorts the timestamps and intervals of every stripe.
+   * @return an array of recorded lap times or an empty array if no times are recorded.
+   */
+  public long[] getLapTimeArray() {
+    lock.lock();
+    try {
+      int total = 0;
+      int intervals = 0;
+      long[] times = new long[16];
+      long[] ends = new long[0];
+      long[] lengths = new long[0];
+      for (Stripe stripe : stripes) {
+        stripe.lock.lock();
+        try {
+          int n = stripe.size();
+          if (total + n + 1 > times.length) {
+            times = Arrays.copyOf(times, Math.max(times.length * 2, total + n + 1));
+          }
+          stripe.copyTo(0, times, total, n);
+          total += n;
+          int m = stripe.intervalEnds.size();
+          if (intervals + m > ends.length) {
+            ends = Arrays.copyOf(ends, Math.max(ends.length * 2, intervals + m));
+            lengths = Arrays.copyOf(lengths, ends.length);
+          }
+          stripe.intervalEnds.copyTo(0, ends, intervals, m);
+          stripe.intervalLengths.copyTo(0, lengths, intervals, m);
+          intervals += m;
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+      int from = 0;
+      int to = 0;
+      if (started) {
+        Arrays.sort(times, 0, total);
+        // A lap that raced with stop() or reset() may fall outside the run; drop it.
+        while (from < total && times[from] < startTime) {
+          from++;
+        }
+        to = total;
+        if (!running) {
+          while (to > from && times[to - 1] > stopTime) {
+            to--;
+          }
+          times[to++] = stopTime;
+        }
+      }
+      sortIntervals(ends, lengths, intervals);
+      // A final lap that start() may still resume goes last, after any interval.
+      boolean finalLapOpen = started && !running && !finalLapClosed;
+      int timeline = finalLapOpen ? to - 1 : to;
+      long[] result = new long[to - from + intervals];
+      int n = 0;
+      int i = from;
+      int j = 0;
+      long previous = startTime;
+      while (i < timeline || j < intervals) {
+        if (j == intervals || (i < timeline && times[i] <= ends[j])) {
+          result[n++] = times[i] - previous;
+          previous = times[i++];
+        } else {
+          result[n++] = lengths[j++];
+        }
+      }
+      if (finalLapOpen) {
+        result[n] = times[to - 1] - previous;
+      }
+      return result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sorts the first <code>n</code> intervals by where they ended, keeping
+   * each length with its end.  Each stripe's intervals are usually in order
+   * already, so the sort is skipped when nothing is out of place.
+   */
+  private static void sortIntervals(long[] ends, long[] lengths, int n) {
+    int k = 1;
+    while (k < n && ends[k - 1] <= ends[k]) {
+      k++;
+    }
+    if (k >= n) {
+      return;
+    }
+    long[] endsOut = new long[n];
+    long[] lengthsOut = new long[n];
+    for (int width = 1; width < n; width *= 2) {
+      for (int lo = 0; lo < n; lo += 2 * width) {
+        int mid = Math.min(lo + width, n);
+        int hi = Math.min(lo + 2 * width, n);
+        int a = lo;
+        int b = mid;
+        for (int out = lo; out < hi; out++) {
+          int next = a < mid && (b == hi || ends[a] <= ends[b]) ? a++ : b++;
+          endsOut[out] = ends[next];
+          lengthsOut[out] = lengths[next];
+        }
+      }
+      System.arraycopy(endsOut, 0, ends, 0, n);
+      System.arraycopy(lengthsOut, 0, lengths, 0, n);
+    }
+  }
+
+  /**
+   * Appends the lap times recorded since lap number <code>sequence</code> to
+   * <code>laps</code>.  Lap times only exist once the stripes are merged, so
+   * unlike the other stopwatches this costs as much as getLapTimes().  The
+   * final lap of a stopped stopwatch is left out, since start() may still
+   * continue it.
+   * @return the lap number to pass to the next call.
+   */
+  @Override
+  public long getLapTimesSince(long sequence, List<Long> laps) {
+    lock.lock();
+    try {
+      long[] all = getLapTimeArray();
+      boolean finalLapOpen = started && !running && !finalLapClosed;
+      long end = firstLapNumber + (finalLapOpen ? all.length - 1 : all.length);
+      for (long i = Math.min(Math.max(sequence, firstLapNumber), end); i < end; i++) {
+        laps.add(all[(int) (i - firstLapNumber)]);
+      }
+      return end;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a string representation of the stopwatch in the same format as
+   * {@link Stopwatch#toString()}.
+   */
+  @Override
+  public String toString() {
+    return Stopwatch.describe(id, running, getLapTimeArray());
+  }
+}
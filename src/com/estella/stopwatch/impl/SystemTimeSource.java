@@ -0,0 +1,54 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * The default TimeSource: reads System.nanoTime() on every call.  Its error
+ * bound is the clock's resolution, measured once as the smallest step
+ * between two different readings.
+ */
+public final class SystemTimeSource implements TimeSource {
+  /** The only instance. */
+  public static final SystemTimeSource INSTANCE = new SystemTimeSource();
+
+  private static final int CALIBRATION_SAMPLES = 1000;
+
+  private volatile long resolution = -1;
+
+  private SystemTimeSource() {
+  }
+
+  private static long measureResolution() {
+    long smallest = Long.MAX_VALUE;
+    for (int i = 0; i < CALIBRATION_SAMPLES; i++) {
+      long t0 = System.nanoTime();
+      long t1;
+      while ((t1 = System.nanoTime()) == t0) {
+        // wait for the clock to tick
+      }
+      smallest = Math.min(smallest, t1 - t0);
+    }
+    return smallest;
+  }
+
+  @Override
+  public long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Returns the resolution of System.nanoTime(), measured on first use.
+   */
+  @Override
+  public long getErrorBoundNanos() {
+    long r = resolution;
+    if (r < 0) {
+      r = measureResolution();
+      resolution = r;
+    }
+    return r;
+  }
+
+  @Override
+  public String toString() {
+    return "SystemTimeSource";
+  }
+}
@@ -0,0 +1,37 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * The clock a stopwatch reads its lap times from.  Values are in nanoseconds
+ * from an arbitrary origin, like System.nanoTime(), and must never go
+ * backwards.  Implementations must be thread-safe.
+ *
+ * The time sources trade accuracy for cost per reading:
+ * <ul>
+ * <li>{@link SystemTimeSource} calls System.nanoTime() (tens of nanoseconds
+ *     on Linux, where the JVM reads the kernel-calibrated TSC through the
+ *     vDSO) and is accurate to the clock's resolution.</li>
+ * <li>{@link CachedTimeSource} costs one volatile read and is accurate to
+ *     its tick plus the ticker thread's scheduling delay.</li>
+ * <li>{@link ManualTimeSource} is exact, because it is the only clock.</li>
+ * </ul>
+ * Run TimeSourceBenchmark in the benchmarks module to compare the costs on a
+ * given machine.
+ *
+ * @see SystemTimeSource
+ * @see CachedTimeSource
+ * @see ManualTimeSource
+ */
+public interface TimeSource {
+
+  /**
+   * Returns the current time in nanoseconds.
+   */
+  long nanoTime();
+
+  /**
+   * Returns how far a single reading may be from the true time, in
+   * nanoseconds, as measured on this JVM.  A lap is the difference of two
+   * readings, so it may be off by up to twice this.
+   */
+  long getErrorBoundNanos();
+}
@@ -0,0 +1,48 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CachedTimeSourceTest {
+
+  @Test
+  public void followsTheClockFromBehind() throws InterruptedException {
+    CachedTimeSource time = new CachedTimeSource(1, TimeUnit.MILLISECONDS);
+    try {
+      long first = time.nanoTime();
+      Thread.sleep(20);
+      long second = time.nanoTime();
+      assertTrue(second > first);
+      assertTrue(time.getErrorBoundNanos() >= time.getTickNanos());
+      assertTrue(time.nanoTime() <= System.nanoTime());
+    } finally {
+      time.close();
+    }
+  }
+
+  @Test
+  public void keepsTheLastValueOnceClosed() throws InterruptedException {
+    CachedTimeSource time = new CachedTimeSource(1, TimeUnit.MILLISECONDS);
+    time.close();
+    Thread.sleep(50);
+    long last = time.nanoTime();
+    Thread.sleep(10);
+    assertEquals(last, time.nanoTime());
+  }
+
+  @Test
+  public void tickIsKeptInNanoseconds() {
+    CachedTimeSource time = new CachedTimeSource(2, TimeUnit.MILLISECONDS);
+    time.close();
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(2), time.getTickNanos());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nonPositiveTickThrows() {
+    new CachedTimeSource(0, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,79 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static com.estella.stopwatch.impl.Concurrently.OPERATIONS_PER_THREAD;
+import static com.estella.stopwatch.impl.Concurrently.THREADS;
+
+import org.junit.Test;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+public class ConcurrencyGaugeTest {
+  private final ManualTimeSource time = new ManualTimeSource();
+
+  @Test
+  public void rejectedTokenDoesNotStayInFlight() {
+    for (StopwatchKind kind : StopwatchKind.values()) {
+      ManagedStopwatch watch = kind.newStopwatch("gauge", time);
+      long token = watch.begin();
+      try {
+        watch.end(token + 1);
+        fail(kind + " accepted a token from the future");
+      } catch (IllegalArgumentException expected) {
+      }
+      ConcurrencyGauge gauge = watch.getConcurrencyGauge();
+      assertEquals(kind.toString(), 0, gauge.getInFlight());
+      assertEquals(kind.toString(), 0, gauge.getCompleted());
+      assertEquals(kind.toString(), 1, gauge.getPeakInFlight());
+    }
+  }
+
+  @Test
+  public void factoryHandsOutTheGaugeOfEveryKind() {
+    for (StopwatchKind kind : StopwatchKind.values()) {
+      IStopwatch watch = StopwatchFactory.getStopwatch("gauge " + kind,
+          StopwatchConfig.defaults().withKind(kind).withTimeSource(time));
+      try {
+        long token = watch.begin();
+        ConcurrencyGauge gauge = StopwatchFactory.getConcurrencyGauge(watch);
+        assertEquals(kind.toString(), 1, gauge.getInFlight());
+        watch.end(token);
+        assertEquals(kind.toString(), 1, gauge.getCompleted());
+      } finally {
+        StopwatchFactory.releaseStopwatch(watch);
+      }
+    }
+  }
+
+  @Test
+  public void tracksPeakOfNestedIntervals() {
+    ConcurrencyGauge gauge = new ConcurrencyGauge(time);
+    gauge.begin();
+    gauge.begin();
+    gauge.begin();
+    gauge.end(1);
+    gauge.end(1);
+    gauge.begin();
+    assertEquals(2, gauge.getInFlight());
+    assertEquals(3, gauge.getPeakInFlight());
+    gauge.reset();
+    assertEquals(2, gauge.getPeakInFlight());
+  }
+
+  @Test
+  public void countsIntervalsFromManyThreads() throws InterruptedException {
+    final ConcurrencyGauge gauge = new ConcurrencyGauge(time);
+    Concurrently.run(new Runnable() {
+      public void run() {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          gauge.begin();
+          gauge.end(2);
+        }
+      }
+    });
+    assertEquals(0, gauge.getInFlight());
+    assertEquals(THREADS * OPERATIONS_PER_THREAD, gauge.getCompleted());
+    assertEquals(2.0, gauge.getMeanLatencyNanos(), 0.0);
+  }
+}
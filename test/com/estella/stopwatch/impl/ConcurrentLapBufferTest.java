@@ -0,0 +1,45 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static com.estella.stopwatch.impl.Concurrently.OPERATIONS_PER_THREAD;
+import static com.estella.stopwatch.impl.Concurrently.THREADS;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ConcurrentLapBufferTest {
+  @Test
+  public void addsInOrderFromOneThread() {
+    ConcurrentLapBuffer buffer = new ConcurrentLapBuffer(10);
+    long[] expected = new long[500];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i;
+      buffer.add(i);
+    }
+    assertEquals(10, buffer.firstLapNumber());
+    assertEquals(expected.length, buffer.size());
+    assertEquals(0, buffer.get(0));
+    assertArrayEquals(expected, buffer.toArray());
+  }
+
+  @Test
+  public void keepsEveryLapAddedConcurrently() throws InterruptedException {
+    final ConcurrentLapBuffer buffer = new ConcurrentLapBuffer();
+    Concurrently.run(new Concurrently.Task() {
+      public void run(int thread) {
+        long base = (long) thread * OPERATIONS_PER_THREAD;
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          buffer.add(base + i);
+        }
+      }
+    });
+    long[] laps = buffer.toArray();
+    assertEquals(THREADS * OPERATIONS_PER_THREAD, laps.length);
+    Arrays.sort(laps);
+    for (int i = 0; i < laps.length; i++) {
+      assertEquals(i, laps[i]);
+    }
+  }
+}
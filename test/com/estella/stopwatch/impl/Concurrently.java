@@ -0,0 +1,64 @@
+package com.estella.stopwatch.impl;
+
+/**
+ * Runs a task on a few threads at once and waits for them, for the tests
+ * that check that no update is lost under contention.
+ */
+final class Concurrently {
+  static final int THREADS = 4;
+  /** How many times each thread repeats the operation under test. */
+  static final int OPERATIONS_PER_THREAD = 20000;
+
+  /**
+   * A task told which of the THREADS threads runs it.
+   */
+  interface Task {
+    void run(int thread);
+  }
+
+  private Concurrently() {
+  }
+
+  static void run(final Runnable task) throws InterruptedException {
+    run(new Task() {
+      public void run(int thread) {
+        task.run();
+      }
+    });
+  }
+
+  /**
+   * Runs <code>task</code> on THREADS threads and waits for all of them.
+   * @throws AssertionError if the task threw on any thread.
+   */
+  static void run(final Task task) throws InterruptedException {
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          task.run(thread);
+        }
+      });
+      threads[t].setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+        public void uncaughtException(Thread thread, Throwable e) {
+          synchronized (failure) {
+            failure[0] = e;
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    synchronized (failure) {
+      if (failure[0] != null) {
+        throw new AssertionError(failure[0]);
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static com.estella.stopwatch.impl.Concurrently.OPERATIONS_PER_THREAD;
+import static com.estella.stopwatch.impl.Concurrently.THREADS;
+
+import org.junit.Test;
+
+public class LapAggregateTest {
+  @Test
+  public void removesALapRecordedByAnotherThread() throws InterruptedException {
+    final LapAggregate aggregate = new LapAggregate("remote");
+    Thread recorder = new Thread(new Runnable() {
+      public void run() {
+        aggregate.record(500);
+      }
+    });
+    recorder.start();
+    recorder.join();
+    aggregate.record(100);
+    aggregate.remove(500);
+    LapSummary summary = aggregate.getSummary();
+    assertEquals(1, summary.getCount());
+    assertEquals(100, summary.getSum());
+    assertEquals(1, aggregate.getHistogram().getCount());
+    aggregate.clear();
+    assertEquals(0, aggregate.getSummary().getCount());
+  }
+
+  @Test
+  public void stopwatchesOfAGroupLoseNoLaps() throws InterruptedException {
+    final String key = "group-" + System.nanoTime();
+    final StopwatchConfig config = StopwatchConfig.defaults().withAggregate(key);
+    Concurrently.run(new Concurrently.Task() {
+      public void run(int thread) {
+        Stopwatch watch = new Stopwatch(key + " " + thread, false, config,
+            SystemTimeSource.INSTANCE);
+        watch.start();
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          watch.lap();
+        }
+        watch.stop();
+        watch.start();
+        watch.stop();
+      }
+    });
+    LapAggregate aggregate = StopwatchFactory.getAggregate(key);
+    assertEquals(THREADS * (OPERATIONS_PER_THREAD + 1), aggregate.getSummary().getCount());
+    assertEquals(THREADS * (OPERATIONS_PER_THREAD + 1), aggregate.getHistogram().getCount());
+  }
+}
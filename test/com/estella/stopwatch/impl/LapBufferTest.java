@@ -0,0 +1,57 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LapBufferTest {
+
+  @Test
+  public void addsAcrossChunks() {
+    LapBuffer buffer = new LapBuffer();
+    long[] expected = new long[1000];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i * 3;
+      buffer.add(i * 3);
+    }
+    assertEquals(expected.length, buffer.size());
+    assertEquals(999 * 3, buffer.get(999));
+    assertArrayEquals(expected, buffer.toArray());
+  }
+
+  @Test
+  public void removeLastAndClearKeepTheChunks() {
+    LapBuffer buffer = new LapBuffer();
+    for (int i = 0; i < 100; i++) {
+      buffer.add(i);
+    }
+    assertEquals(99, buffer.removeLast());
+    assertEquals(99, buffer.size());
+    buffer.clear();
+    assertTrue(buffer.isEmpty());
+    buffer.add(7);
+    assertArrayEquals(new long[] { 7 }, buffer.toArray());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getPastTheEndThrows() {
+    LapBuffer buffer = new LapBuffer();
+    buffer.add(1);
+    buffer.get(1);
+  }
+
+  @Test
+  public void everyChunkLengthFitsInAnInt() {
+    int total = 0;
+    for (int chunk = 0; chunk < LapBuffer.MAX_CHUNKS; chunk++) {
+      assertTrue(LapBuffer.chunkLength(chunk) > 0);
+      total += LapBuffer.chunkLength(chunk);
+    }
+    assertEquals(LapBuffer.CAPACITY, total);
+    assertEquals(LapBuffer.MAX_CHUNKS - 1, LapBuffer.chunkOf(LapBuffer.CAPACITY - 1));
+    assertEquals(LapBuffer.chunkLength(LapBuffer.MAX_CHUNKS - 1) - 1,
+        LapBuffer.offsetOf(LapBuffer.CAPACITY - 1, LapBuffer.MAX_CHUNKS - 1));
+  }
+}
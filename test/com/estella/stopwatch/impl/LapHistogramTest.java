@@ -0,0 +1,123 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LapHistogramTest {
+
+  @Test
+  public void bucketsCoverEveryValueWithoutGaps() {
+    int last = LapHistogram.bucketOf(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, LapHistogram.highestValueIn(last));
+    assertEquals(0, LapHistogram.lowestValueIn(0));
+    for (int b = 0; b < last; b++) {
+      long low = LapHistogram.lowestValueIn(b);
+      long high = LapHistogram.highestValueIn(b);
+      assertEquals(b, LapHistogram.bucketOf(low));
+      assertEquals(b, LapHistogram.bucketOf(high));
+      assertEquals(high + 1, LapHistogram.lowestValueIn(b + 1));
+      assertTrue("bucket " + b + " is wider than 1/64", (high - low) * 64 <= Math.max(low, 64));
+    }
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LapHistogram histogram = new LapHistogram();
+    for (long value = 0; value < 128; value++) {
+      histogram.record(value);
+    }
+    assertEquals(128, histogram.getCount());
+    assertEquals(127 * 128 / 2, histogram.getSum());
+    assertEquals(0, histogram.getMin());
+    assertEquals(127, histogram.getMax());
+    assertEquals(63, histogram.getPercentile(50));
+    assertEquals(127, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void percentilesAreWithinOneSixtyFourthOfTheTrueValue() {
+    Random random = new Random(42);
+    LapHistogram histogram = new LapHistogram();
+    long[] laps = new long[100000];
+    for (int i = 0; i < laps.length; i++) {
+      laps[i] = (long) Math.exp(random.nextGaussian() * 2 + 12);
+      histogram.record(laps[i]);
+    }
+    Arrays.sort(laps);
+    for (double percentile : new double[] { 0, 1, 50, 90, 99, 99.9, 99.99, 100 }) {
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * laps.length));
+      long exact = laps[(int) rank - 1];
+      long estimate = histogram.getPercentile(percentile);
+      assertTrue("p" + percentile + " " + estimate + " < " + exact, estimate >= exact);
+      assertTrue("p" + percentile + " " + estimate + " vs " + exact,
+          estimate - exact <= exact / 64);
+    }
+    assertEquals(laps[0], histogram.getMin());
+    assertEquals(laps[laps.length - 1], histogram.getMax());
+  }
+
+  @Test
+  public void removeMovesMinAndMaxToTheNeighbouringBuckets() {
+    LapHistogram histogram = new LapHistogram();
+    histogram.record(100);
+    histogram.record(5000);
+    histogram.record(90000);
+    assertTrue(histogram.remove(100));
+    assertTrue(histogram.getMin() <= 5000);
+    assertTrue(histogram.getMin() >= 5000 - 5000 / 64);
+    assertEquals(90000, histogram.getMax());
+    assertTrue(histogram.remove(90000));
+    assertTrue(histogram.getMax() >= 5000);
+    assertTrue(histogram.getMax() <= 5000 + 5000 / 64);
+    assertEquals(1, histogram.getCount());
+    assertEquals(5000, histogram.getSum());
+    assertTrue(histogram.remove(5000));
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMin());
+    assertEquals(0, histogram.getMax());
+    assertFalse(histogram.remove(5000));
+  }
+
+  @Test
+  public void removeKeepsMinAndMaxWhileOthersAreLeft() {
+    LapHistogram histogram = new LapHistogram();
+    histogram.record(700);
+    histogram.record(700);
+    histogram.record(300);
+    assertTrue(histogram.remove(700));
+    assertEquals(300, histogram.getMin());
+    assertEquals(700, histogram.getMax());
+    assertFalse(histogram.remove(9999));
+    assertEquals(2, histogram.getCount());
+  }
+
+  @Test
+  public void addMergesAndCopyIsIndependent() {
+    LapHistogram a = new LapHistogram();
+    a.record(10);
+    a.record(-5);
+    LapHistogram b = new LapHistogram();
+    b.record(1000);
+    LapHistogram copy = a.copy();
+    a.add(b);
+    assertEquals(3, a.getCount());
+    assertEquals(1010, a.getSum());
+    assertEquals(0, a.getMin());
+    assertEquals(1000, a.getMax());
+    assertEquals(2, copy.getCount());
+    a.clear();
+    assertEquals(0, a.getCount());
+    assertEquals(0, a.getPercentile(50));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void percentileAboveHundredThrows() {
+    new LapHistogram().getPercentile(100.5);
+  }
+}
@@ -0,0 +1,60 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LapLabelColumnTest {
+
+  @Test
+  public void growingColumnKeepsEveryId() {
+    LapLabelColumn column = new LapLabelColumn();
+    for (int i = 0; i < 1000; i++) {
+      column.add(i % LapLabels.MAX_LABELS);
+    }
+    column.add(LapLabels.MAX_LABELS - 1);
+    assertEquals(1001, column.size());
+    assertEquals(999, column.get(999));
+    assertEquals(LapLabels.MAX_LABELS - 1, column.removeLast());
+    column.clear();
+    assertEquals(0, column.size());
+  }
+
+  @Test
+  public void ringPushesOutTheOldestId() {
+    LapLabelColumn column = new LapLabelColumn(3);
+    for (int i = 1; i <= 5; i++) {
+      column.add(i);
+    }
+    assertEquals(3, column.size());
+    assertEquals(3, column.get(0));
+    assertEquals(5, column.removeLast());
+    assertEquals(4, column.get(1));
+  }
+
+  @Test
+  public void labelsFollowTheLapsOfAStopwatch() {
+    ManualTimeSource time = new ManualTimeSource();
+    Stopwatch watch = new Stopwatch("labelled", false,
+        StopwatchConfig.defaults().withLapRetention(2), time);
+    watch.start();
+    watch.lap();
+    time.advance(1, TimeUnit.MILLISECONDS);
+    watch.lap("parse");
+    time.advance(2, TimeUnit.MILLISECONDS);
+    watch.lap("render");
+    time.advance(3, TimeUnit.MILLISECONDS);
+    watch.stop();
+    assertEquals(Arrays.asList("render", null), watch.getLapLabels());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), watch.getLabelSummary("parse").getSum());
+    watch.start();
+    time.advance(1, TimeUnit.MILLISECONDS);
+    watch.lap("render");
+    assertEquals(Arrays.asList("render", "render"), watch.getLapLabels());
+    assertEquals(2, watch.getLabelSummary("render").getCount());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(6), watch.getLabelSummary("render").getSum());
+  }
+}
@@ -0,0 +1,38 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LapLabelSlotsTest {
+
+  @Test
+  public void handsOutDenseSlotsInOrderOfFirstUse() {
+    LapLabelSlots slots = new LapLabelSlots();
+    assertEquals(0, slots.slotOf(60000));
+    assertEquals(1, slots.slotOf(3));
+    assertEquals(0, slots.slotOf(60000));
+    assertEquals(2, slots.slotOf(LapLabels.MAX_LABELS - 1));
+    assertEquals(3, slots.size());
+    assertEquals(1, slots.find(3));
+    assertEquals(-1, slots.find(4));
+  }
+
+  @Test
+  public void keepsEverySlotAsItGrows() {
+    LapLabelSlots slots = new LapLabelSlots();
+    for (int i = 1; i <= 1000; i++) {
+      assertEquals(i - 1, slots.slotOf(i * 37));
+    }
+    for (int i = 1; i <= 1000; i++) {
+      assertEquals(i - 1, slots.find(i * 37));
+    }
+    assertEquals(-1, slots.find(38));
+    assertEquals(1000, slots.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noLabelHasNoSlot() {
+    new LapLabelSlots().slotOf(LapLabels.NO_LABEL);
+  }
+}
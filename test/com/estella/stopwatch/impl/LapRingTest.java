@@ -0,0 +1,75 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class LapRingTest {
+
+  private static LapRing ringOf(int capacity, long... laps) {
+    LapRing ring = new LapRing(capacity);
+    for (long lap : laps) {
+      ring.add(lap);
+    }
+    return ring;
+  }
+
+  @Test
+  public void keepsTheLastLapsAndFoldsTheRest() {
+    LapRing ring = ringOf(3, 5, 1, 9, 2, 7);
+    assertArrayEquals(new long[] { 9, 2, 7 }, ring.toArray());
+    assertEquals(9, ring.get(0));
+    assertEquals(2, ring.droppedCount());
+    LapSummary dropped = ring.getDropped();
+    assertEquals(2, dropped.getCount());
+    assertEquals(6, dropped.getSum());
+    assertEquals(1, dropped.getMin());
+    assertEquals(5, dropped.getMax());
+  }
+
+  @Test
+  public void copyToWrapsAroundTheEnd() {
+    LapRing ring = ringOf(4, 1, 2, 3, 4, 5, 6);
+    long[] dest = new long[6];
+    ring.copyTo(1, dest, 2, 3);
+    assertArrayEquals(new long[] { 0, 0, 4, 5, 6, 0 }, dest);
+    ring.copyTo(0, dest, 0, 4);
+    assertArrayEquals(new long[] { 3, 4, 5, 6, 6, 0 }, dest);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void copyToPastTheKeptLapsThrows() {
+    ringOf(4, 1, 2, 3, 4, 5).copyTo(2, new long[8], 0, 3);
+  }
+
+  @Test
+  public void removeLastOnAFullRingAfterDrops() {
+    LapRing ring = ringOf(3, 1, 2, 3, 4);
+    assertEquals(4, ring.removeLast());
+    assertArrayEquals(new long[] { 2, 3 }, ring.toArray());
+    ring.add(8);
+    assertArrayEquals(new long[] { 2, 3, 8 }, ring.toArray());
+    ring.add(9);
+    assertArrayEquals(new long[] { 3, 8, 9 }, ring.toArray());
+    assertEquals(2, ring.droppedCount());
+    assertEquals(3, ring.getDropped().getSum());
+  }
+
+  @Test
+  public void clearForgetsTheDroppedLaps() {
+    LapRing ring = ringOf(2, 1, 2, 3);
+    ring.clear();
+    assertEquals(0, ring.size());
+    assertEquals(0, ring.droppedCount());
+    assertSame(LapSummary.EMPTY, ring.getDropped());
+    ring.add(4);
+    assertArrayEquals(new long[] { 4 }, ring.toArray());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void removeLastOnAnEmptyRingThrows() {
+    ringOf(2).removeLast();
+  }
+}
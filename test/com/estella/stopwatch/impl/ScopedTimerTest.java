@@ -0,0 +1,61 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ScopedTimerTest {
+  private final ManualTimeSource time = new ManualTimeSource();
+  private final ScopedTimer timer = ScopedTimer.create("scoped-" + System.nanoTime(),
+      StopwatchConfig.defaults().withTimeSource(time));
+
+  @After
+  public void tearDown() {
+    StopwatchFactory.setStoppedTimeToLive(0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void recordsEachScopeAsALap() {
+    ScopedTimer.Scope outer = timer.begin();
+    time.advance(1, TimeUnit.MILLISECONDS);
+    ScopedTimer.Scope inner = timer.begin();
+    time.advance(2, TimeUnit.MILLISECONDS);
+    inner.close();
+    outer.close();
+    Stopwatch watch = outer.getStopwatch();
+    assertFalse(watch.isRunning());
+    assertEquals(2, watch.getLapTimes().size());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(2), (long) watch.getLapTimes().get(0));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(3), (long) watch.getLapTimes().get(1));
+    StopwatchFactory.releaseStopwatch(watch);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void closingTooOftenThrows() {
+    ScopedTimer.Scope scope = timer.begin();
+    scope.close();
+    scope.close();
+  }
+
+  @Test
+  public void busyScopedStopwatchIsNotEvictedAsIdle() {
+    ScopedTimer.Scope scope = timer.begin();
+    scope.close();
+    Stopwatch watch = scope.getStopwatch();
+    StopwatchFactory.setStoppedTimeToLive(10, TimeUnit.MILLISECONDS);
+    for (int i = 0; i < 5; i++) {
+      time.advance(8, TimeUnit.MILLISECONDS);
+      timer.begin().close();
+      StopwatchFactory.evictExpired();
+      assertTrue(StopwatchFactory.getStopwatches().contains(watch));
+    }
+    time.advance(11, TimeUnit.MILLISECONDS);
+    StopwatchFactory.evictExpired();
+    assertFalse(StopwatchFactory.getStopwatches().contains(watch));
+  }
+}
@@ -0,0 +1,78 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SpanTreeTest {
+  private final ManualTimeSource time = new ManualTimeSource();
+
+  private void advance(long millis) {
+    time.advance(millis, TimeUnit.MILLISECONDS);
+  }
+
+  private static long nanos(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  @Test
+  public void splitsTotalIntoSelfAndChildren() {
+    SpanTree spans = new SpanTree(1, time);
+    int request = spans.begin("request");
+    advance(1);
+    int query = spans.begin("db.query");
+    advance(4);
+    spans.end(query);
+    advance(2);
+    spans.end(request);
+    assertEquals(2, spans.size());
+    assertEquals(request, spans.getParent(query));
+    assertEquals(1, spans.getDepth(query));
+    assertFalse(spans.isOpen(request));
+    assertEquals(nanos(7), spans.getTotalNanos(request));
+    assertEquals(nanos(3), spans.getSelfNanos(request));
+    assertEquals(nanos(4), spans.getSelfNanos(query));
+    assertTrue(spans.toString().contains("  db.query - total 4 ms, self 4 ms"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void endingAnOuterSpanFirstThrows() {
+    SpanTree spans = new SpanTree(4, time);
+    int request = spans.begin("request");
+    spans.begin("db.query");
+    spans.end(request);
+  }
+
+  @Test
+  public void rootSpansBecomeLapsOfTheOwner() {
+    ManagedStopwatch owner = StopwatchKind.SYNCHRONIZED.newStopwatch("endpoint", time);
+    SpanTree spans = new SpanTree(4, time, owner);
+    for (long millis = 1; millis <= 2; millis++) {
+      int request = spans.begin("request");
+      int query = spans.begin("db.query");
+      advance(millis);
+      spans.end(query);
+      advance(millis);
+      spans.end(request);
+      spans.reset();
+    }
+    assertEquals(Arrays.asList(nanos(2), nanos(4)), owner.getLapTimes());
+    assertEquals(0, owner.getConcurrencyGauge().getInFlight());
+  }
+
+  @Test
+  public void resetEndsAnOpenRootSpanInTheOwner() {
+    ManagedStopwatch owner = StopwatchKind.LOCK_FREE.newStopwatch("endpoint", time);
+    SpanTree spans = new SpanTree(4, time, owner);
+    spans.begin("request");
+    advance(3);
+    spans.reset();
+    assertEquals(Arrays.asList(nanos(3)), owner.getLapTimes());
+    assertEquals(0, owner.getConcurrencyGauge().getInFlight());
+  }
+}
@@ -0,0 +1,61 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class StopwatchConfigTest {
+  private final ManualTimeSource time = new ManualTimeSource();
+
+  private void assertRejected(StopwatchConfig config) {
+    try {
+      config.newStopwatch("watch", time);
+      fail("expected IllegalArgumentException for " + config);
+    } catch (IllegalArgumentException expected) {
+      // fine
+    }
+  }
+
+  @Test
+  public void rawLapsCanOnlyBeDroppedForAHistogram() {
+    assertRejected(StopwatchConfig.defaults().withRawLaps(false));
+    assertTrue(StopwatchConfig.defaults().withRawLaps(false).withHistogram(true)
+        .newStopwatch("watch", time) instanceof Stopwatch);
+  }
+
+  @Test
+  public void lapStorageOptionsNeedASynchronizedStopwatch() {
+    for (StopwatchKind kind : new StopwatchKind[] { StopwatchKind.LOCK_FREE, StopwatchKind.STRIPED }) {
+      StopwatchConfig config = StopwatchConfig.defaults().withKind(kind);
+      assertRejected(config.withHistogram(true));
+      assertRejected(config.withHistogram(true).withRawLaps(false));
+      assertRejected(config.withLapRetention(8));
+      assertRejected(config.withAggregate("config-test"));
+      assertEquals(kind.toString(), config.newStopwatch("watch", time).getClass(),
+          kind.newStopwatch("watch", time).getClass());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeRetentionThrows() {
+    StopwatchConfig.defaults().withLapRetention(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyAggregateKeyThrows() {
+    StopwatchConfig.defaults().withAggregate(" ");
+  }
+
+  @Test
+  public void configuredTimeSourceWinsOverTheDefault() {
+    ManualTimeSource own = new ManualTimeSource();
+    Stopwatch watch = (Stopwatch) StopwatchConfig.defaults().withTimeSource(own)
+        .newStopwatch("watch", time);
+    own.advance(5, TimeUnit.MILLISECONDS);
+    assertEquals(own.nanoTime(), watch.readTime());
+  }
+}
@@ -0,0 +1,360 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static com.estella.stopwatch.impl.Concurrently.OPERATIONS_PER_THREAD;
+import static com.estella.stopwatch.impl.Concurrently.THREADS;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * The IStopwatch contract, checked against every StopwatchKind.
+ */
+@RunWith(Parameterized.class)
+public class StopwatchContractTest {
+  private final StopwatchKind kind;
+  private ManualTimeSource time;
+  private ManagedStopwatch watch;
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> kinds() {
+    List<Object[]> kinds = new ArrayList<>();
+    for (StopwatchKind kind : StopwatchKind.values()) {
+      kinds.add(new Object[] { kind });
+    }
+    return kinds;
+  }
+
+  public StopwatchContractTest(StopwatchKind kind) {
+    this.kind = kind;
+  }
+
+  @Before
+  public void setUp() {
+    time = new ManualTimeSource();
+    watch = kind.newStopwatch("contract", time);
+  }
+
+  private void advance(long millis) {
+    time.advance(millis, TimeUnit.MILLISECONDS);
+  }
+
+  private static List<Long> millis(long... laps) {
+    List<Long> nanos = new ArrayList<>();
+    for (long lap : laps) {
+      nanos.add(TimeUnit.MILLISECONDS.toNanos(lap));
+    }
+    return nanos;
+  }
+
+  @Test
+  public void rejectsEmptyId() {
+    try {
+      kind.newStopwatch(" ", time);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // fine
+    }
+  }
+
+  @Test
+  public void newStopwatchIsStoppedAndEmpty() {
+    assertEquals("contract", watch.getId());
+    assertFalse(watch.isRunning());
+    assertTrue(watch.getLapTimes().isEmpty());
+    assertEquals(0, watch.getLapSummary().getCount());
+  }
+
+  @Test
+  public void recordsLapsAndFinalLap() {
+    watch.start();
+    assertTrue(watch.isRunning());
+    advance(1);
+    watch.lap();
+    advance(2);
+    watch.lap();
+    advance(3);
+    watch.stop();
+    assertFalse(watch.isRunning());
+    assertEquals(millis(1, 2, 3), watch.getLapTimes());
+    LapSummary summary = watch.getLapSummary();
+    assertEquals(3, summary.getCount());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(6), summary.getSum());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), summary.getMin());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(3), summary.getMax());
+  }
+
+  @Test
+  public void startContinuesTheFinalLap() {
+    watch.start();
+    advance(1);
+    watch.lap();
+    advance(2);
+    watch.stop();
+    advance(100);
+    watch.start();
+    advance(5);
+    watch.lap();
+    advance(7);
+    watch.stop();
+    assertEquals(millis(1, 7, 7), watch.getLapTimes());
+  }
+
+  @Test
+  public void resetClearsLapsAndStops() {
+    watch.start();
+    advance(1);
+    watch.lap();
+    watch.reset();
+    assertFalse(watch.isRunning());
+    assertTrue(watch.getLapTimes().isEmpty());
+    watch.start();
+    advance(4);
+    watch.stop();
+    assertEquals(millis(4), watch.getLapTimes());
+  }
+
+  @Test
+  public void startAfterResetBeginsANewLap() {
+    watch.start();
+    advance(1);
+    watch.stop();
+    watch.reset();
+    watch.start();
+    advance(4);
+    watch.stop();
+    assertEquals(millis(4), watch.getLapTimes());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void startTwiceThrows() {
+    watch.start();
+    watch.start();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void lapWhenStoppedThrows() {
+    watch.lap();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void stopWhenStoppedThrows() {
+    watch.stop();
+  }
+
+  @Test
+  public void getLapTimesSinceReturnsOnlyNewLaps() {
+    List<Long> seen = new ArrayList<>();
+    long sequence = watch.getLapTimesSince(0, seen);
+    assertEquals(0, sequence);
+    watch.start();
+    advance(1);
+    watch.lap();
+    advance(2);
+    watch.lap();
+    sequence = watch.getLapTimesSince(sequence, seen);
+    assertEquals(2, sequence);
+    assertEquals(millis(1, 2), seen);
+    advance(3);
+    watch.lap();
+    sequence = watch.getLapTimesSince(sequence, seen);
+    assertEquals(3, sequence);
+    assertEquals(millis(1, 2, 3), seen);
+    assertEquals(3, watch.getLapTimesSince(sequence, seen));
+    assertEquals(3, seen.size());
+  }
+
+  @Test
+  public void pollingAroundAResumeSeesEachLapOnce() {
+    List<Long> seen = new ArrayList<>();
+    watch.start();
+    advance(1);
+    watch.lap();
+    advance(2);
+    watch.stop();
+    long sequence = watch.getLapTimesSince(0, seen);
+    assertEquals(1, sequence);
+    assertEquals(sequence, watch.getLapTimesSince(sequence, seen));
+    watch.start();
+    sequence = watch.getLapTimesSince(sequence, seen);
+    assertEquals(1, sequence);
+    advance(5);
+    watch.lap();
+    advance(7);
+    watch.lap();
+    watch.stop();
+    sequence = watch.getLapTimesSince(sequence, seen);
+    assertEquals(3, sequence);
+    assertEquals(millis(1, 7, 7), seen);
+    assertEquals(millis(1, 7, 7, 0), watch.getLapTimes());
+  }
+
+  @Test
+  public void endReleasesTheHeldBackFinalLap() {
+    List<Long> seen = new ArrayList<>();
+    watch.start();
+    advance(1);
+    watch.lap();
+    advance(2);
+    watch.stop();
+    long sequence = watch.getLapTimesSince(0, seen);
+    watch.end(watch.begin());
+    sequence = watch.getLapTimesSince(sequence, seen);
+    assertEquals(3, sequence);
+    assertEquals(millis(1, 2, 0), seen);
+    assertEquals(watch.getLapTimes(), seen);
+  }
+
+  @Test
+  public void resetSkipsTheHeldBackFinalLap() {
+    List<Long> seen = new ArrayList<>();
+    watch.start();
+    advance(1);
+    watch.stop();
+    long sequence = watch.getLapTimesSince(0, seen);
+    assertEquals(0, sequence);
+    watch.reset();
+    watch.start();
+    advance(3);
+    watch.lap();
+    sequence = watch.getLapTimesSince(sequence, seen);
+    assertEquals(2, sequence);
+    assertEquals(millis(3), seen);
+  }
+
+  @Test
+  public void endStoresIntervalsWhetherOrNotRunning() {
+    long outer = watch.begin();
+    advance(1);
+    long inner = watch.begin();
+    advance(2);
+    watch.end(inner);
+    advance(3);
+    watch.end(outer);
+    assertFalse(watch.isRunning());
+    assertEquals(millis(2, 6), watch.getLapTimes());
+  }
+
+  @Test
+  public void intervalsInterleaveWithLapsInRecordingOrder() {
+    watch.start();
+    advance(1);
+    watch.lap();
+    long token = watch.begin();
+    advance(2);
+    watch.end(token);
+    advance(3);
+    watch.lap();
+    watch.stop();
+    token = watch.begin();
+    advance(1);
+    watch.end(token);
+    advance(10);
+    watch.start();
+    advance(4);
+    watch.stop();
+    assertEquals(millis(1, 2, 5, 0, 1, 4), watch.getLapTimes());
+  }
+
+  @Test
+  public void endRejectsTokenFromTheFuture() {
+    try {
+      watch.end(time.nanoTime() + 1);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      assertTrue(watch.getLapTimes().isEmpty());
+    }
+  }
+
+  @Test
+  public void concurrentLapsAreNotLost() throws InterruptedException {
+    final ManagedStopwatch shared = kind.newStopwatch("shared", SystemTimeSource.INSTANCE);
+    shared.start();
+    Concurrently.run(new Runnable() {
+      public void run() {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          shared.lap();
+        }
+      }
+    });
+    shared.stop();
+    List<Long> laps = shared.getLapTimes();
+    assertEquals(THREADS * OPERATIONS_PER_THREAD + 1, laps.size());
+    assertEquals(laps.size(), shared.getLapSummary().getCount());
+    for (long lap : laps) {
+      assertTrue(lap >= 0);
+    }
+  }
+
+  @Test
+  public void concurrentIntervalsAreNotLost() throws InterruptedException {
+    final ManagedStopwatch shared = kind.newStopwatch("shared", SystemTimeSource.INSTANCE);
+    Concurrently.run(new Runnable() {
+      public void run() {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          shared.end(shared.begin());
+        }
+      }
+    });
+    assertEquals(THREADS * OPERATIONS_PER_THREAD, shared.getLapTimes().size());
+  }
+
+  @Test
+  public void concurrentPollingSeesEveryLapOnce() throws InterruptedException {
+    final ManagedStopwatch shared = kind.newStopwatch("shared", SystemTimeSource.INSTANCE);
+    final CountDownLatch done = new CountDownLatch(THREADS);
+    final List<Long> polled = new ArrayList<>();
+    Thread poller = new Thread(new Runnable() {
+      public void run() {
+        long sequence = 0;
+        while (done.getCount() > 0) {
+          sequence = shared.getLapTimesSince(sequence, polled);
+        }
+      }
+    });
+    shared.start();
+    poller.start();
+    Concurrently.run(new Runnable() {
+      public void run() {
+        try {
+          for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+            shared.lap();
+          }
+        } finally {
+          done.countDown();
+        }
+      }
+    });
+    poller.join();
+    long sequence = shared.getLapTimesSince(polled.size(), polled);
+    assertEquals(THREADS * OPERATIONS_PER_THREAD / 10, sequence);
+    assertEquals(sequence, polled.size());
+    if (kind != StopwatchKind.STRIPED) {
+      // A striped stopwatch works its lap times out on read, so a lap that
+      // lands in another stripe late may change laps that were already read.
+      assertEquals(shared.getLapTimes(), polled);
+    }
+  }
+
+  @Test
+  public void toStringListsTheLaps() {
+    watch.start();
+    advance(13);
+    watch.stop();
+    String text = watch.toString();
+    assertTrue(text, text.contains("Stopwatch Id - contract"));
+    assertTrue(text, text.contains("Lap - 1: 13 ms."));
+  }
+}
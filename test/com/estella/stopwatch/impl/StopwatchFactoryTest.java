@@ -0,0 +1,249 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+public class StopwatchFactoryTest {
+  private final ManualTimeSource time = new ManualTimeSource();
+  private final StopwatchConfig config = StopwatchConfig.defaults().withTimeSource(time);
+
+  @Before
+  public void setUp() {
+    releaseAll();
+  }
+
+  @After
+  public void tearDown() {
+    StopwatchFactory.setCapacity(0, EvictionPolicy.LEAST_RECENTLY_USED);
+    StopwatchFactory.setStoppedTimeToLive(0, TimeUnit.MILLISECONDS);
+    StopwatchFactory.setDefaultTimeSource(SystemTimeSource.INSTANCE);
+    StopwatchFactory.setPoolCapacity(256);
+    releaseAll();
+  }
+
+  private static void releaseAll() {
+    for (IStopwatch watch : StopwatchFactory.getStopwatches()) {
+      StopwatchFactory.releaseStopwatch(watch);
+    }
+  }
+
+  private void advance(long millis) {
+    time.advance(millis, TimeUnit.MILLISECONDS);
+  }
+
+  private IStopwatch create(String id) {
+    return StopwatchFactory.getStopwatch(id, config);
+  }
+
+  private static boolean held(IStopwatch watch) {
+    return StopwatchFactory.getStopwatches().contains(watch);
+  }
+
+  @Test
+  public void evictsStoppedStopwatchesOnceTheirTimeToLiveIsUp() {
+    IStopwatch idle = create("idle");
+    IStopwatch running = create("running");
+    running.start();
+    IStopwatch stopped = create("stopped");
+    stopped.start();
+    StopwatchFactory.setStoppedTimeToLive(10, TimeUnit.MILLISECONDS);
+    advance(6);
+    stopped.stop();
+    advance(6);
+    long evictedBefore = StopwatchFactory.getEvictionCount();
+    assertEquals(1, StopwatchFactory.evictExpired());
+    assertFalse(held(idle));
+    assertTrue(held(running));
+    assertTrue(held(stopped));
+    advance(5);
+    assertEquals(1, StopwatchFactory.evictExpired());
+    assertFalse(held(stopped));
+    assertTrue(held(running));
+    assertEquals(evictedBefore + 2, StopwatchFactory.getEvictionCount());
+  }
+
+  @Test
+  public void leastRecentlyUsedKeepsAStopwatchThatKeepsLapping() {
+    for (StopwatchKind kind : StopwatchKind.values()) {
+      IStopwatch busy = StopwatchFactory.getStopwatch("busy " + kind, config.withKind(kind));
+      busy.start();
+      StopwatchFactory.setCapacity(10, EvictionPolicy.LEAST_RECENTLY_USED);
+      for (int i = 0; i < 20; i++) {
+        advance(1);
+        busy.lap();
+        create(kind + " " + i);
+      }
+      assertTrue(kind.toString(), held(busy));
+      assertTrue(StopwatchFactory.getLiveStopwatchCount() <= 10);
+      tearDown();
+    }
+  }
+
+  @Test
+  public void stopwatchTimedWithBeginAndEndIsNotEvictedAsIdle() {
+    StopwatchFactory.setStoppedTimeToLive(10, TimeUnit.MILLISECONDS);
+    for (StopwatchKind kind : StopwatchKind.values()) {
+      IStopwatch watch = StopwatchFactory.getStopwatch("intervals " + kind, config.withKind(kind));
+      for (int i = 0; i < 5; i++) {
+        long token = watch.begin();
+        advance(8);
+        watch.end(token);
+        StopwatchFactory.evictExpired();
+        assertTrue(kind.toString(), held(watch));
+      }
+      advance(11);
+      StopwatchFactory.evictExpired();
+      assertFalse(kind.toString(), held(watch));
+    }
+  }
+
+  @Test
+  public void leastRecentlyUsedEvictsTheLongestIdleFirst() {
+    StopwatchFactory.setCapacity(10, EvictionPolicy.LEAST_RECENTLY_USED);
+    IStopwatch[] watches = new IStopwatch[10];
+    for (int i = 0; i < watches.length; i++) {
+      watches[i] = create("watch " + i);
+      advance(1);
+    }
+    watches[0].start();
+    advance(1);
+    create("one too many");
+    assertEquals(9, StopwatchFactory.getLiveStopwatchCount());
+    assertTrue(held(watches[0]));
+    assertFalse(held(watches[1]));
+    assertFalse(held(watches[2]));
+    assertTrue(held(watches[3]));
+  }
+
+  @Test
+  public void oldestStoppedFirstNeverEvictsARunningStopwatch() {
+    StopwatchFactory.setCapacity(10, EvictionPolicy.OLDEST_STOPPED_FIRST);
+    IStopwatch oldest = create("oldest");
+    oldest.start();
+    advance(1);
+    IStopwatch stopped = create("stopped");
+    for (int i = 0; i < 9; i++) {
+      create("running " + i).start();
+      advance(1);
+    }
+    assertTrue(held(oldest));
+    assertFalse(held(stopped));
+    assertEquals(10, StopwatchFactory.getLiveStopwatchCount());
+  }
+
+  @Test
+  public void oldestStoppedFirstWaitsForABatchWhileNothingCanBeEvicted() {
+    StopwatchFactory.setCapacity(100, EvictionPolicy.OLDEST_STOPPED_FIRST);
+    IStopwatch first = create("first");
+    first.start();
+    for (int i = 0; i < 100; i++) {
+      create("running " + i).start();
+    }
+    assertEquals(101, StopwatchFactory.getLiveStopwatchCount());
+    first.stop();
+    for (int i = 0; i < 9; i++) {
+      create("more " + i).start();
+    }
+    assertTrue(held(first));
+    create("batch").start();
+    assertFalse(held(first));
+    assertEquals(110, StopwatchFactory.getLiveStopwatchCount());
+  }
+
+  @Test
+  public void defaultTimeSourceTimesNewStopwatches() {
+    StopwatchFactory.setDefaultTimeSource(time);
+    IStopwatch plain = StopwatchFactory.getStopwatch("plain");
+    IStopwatch pooled = StopwatchFactory.getPooledStopwatch("pooled");
+    plain.start();
+    pooled.start();
+    advance(7);
+    plain.stop();
+    pooled.stop();
+    Long lap = TimeUnit.MILLISECONDS.toNanos(7);
+    assertEquals(Collections.singletonList(lap), plain.getLapTimes());
+    assertEquals(Collections.singletonList(lap), pooled.getLapTimes());
+  }
+
+  @Test
+  public void pooledStopwatchOutDuringTheSwitchIsNotReused() {
+    StopwatchFactory.setPoolCapacity(4);
+    IStopwatch before = StopwatchFactory.getPooledStopwatch("before");
+    StopwatchFactory.setDefaultTimeSource(time);
+    StopwatchFactory.releaseStopwatch(before);
+    IStopwatch after = StopwatchFactory.getPooledStopwatch("after");
+    assertNotSame(before, after);
+    assertSame(time, ((Stopwatch) after).getTimeSource());
+    StopwatchFactory.releaseStopwatch(after);
+    assertSame(after, StopwatchFactory.getPooledStopwatch("again"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nullDefaultTimeSourceThrows() {
+    StopwatchFactory.setDefaultTimeSource(null);
+  }
+
+  @Test
+  public void snapshotsAreSortedByIdAndSummarizeEveryKind() {
+    for (StopwatchKind kind : StopwatchKind.values()) {
+      IStopwatch watch = StopwatchFactory.getStopwatch("kind " + kind, config.withKind(kind));
+      watch.start();
+      advance(2);
+      watch.lap();
+      advance(5);
+      watch.stop();
+    }
+    IStopwatch ring = StopwatchFactory.getStopwatch("a ring", config.withLapRetention(2));
+    ring.start();
+    for (int i = 1; i <= 4; i++) {
+      advance(i);
+      ring.lap();
+    }
+    List<StopwatchSnapshot> snapshots = StopwatchFactory.snapshotStopwatches();
+    assertEquals(StopwatchKind.values().length + 1, snapshots.size());
+    StopwatchSnapshot ringSnapshot = snapshots.get(0);
+    assertEquals("a ring", ringSnapshot.getId());
+    assertTrue(ringSnapshot.isRunning());
+    assertEquals(4, ringSnapshot.getLaps().getCount());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), ringSnapshot.getLaps().getSum());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), ringSnapshot.getLaps().getMin());
+    for (int i = 1; i < snapshots.size(); i++) {
+      StopwatchSnapshot snapshot = snapshots.get(i);
+      assertTrue(snapshots.get(i - 1).getId().compareTo(snapshot.getId()) < 0);
+      assertFalse(snapshot.getId(), snapshot.isRunning());
+      LapSummary laps = snapshot.getLaps();
+      assertEquals(snapshot.getId(), 2, laps.getCount());
+      assertEquals(snapshot.getId(), TimeUnit.MILLISECONDS.toNanos(7), laps.getSum());
+      assertEquals(snapshot.getId(), TimeUnit.MILLISECONDS.toNanos(2), laps.getMin());
+      assertEquals(snapshot.getId(), TimeUnit.MILLISECONDS.toNanos(5), laps.getMax());
+    }
+  }
+
+  @Test
+  public void exportWritesOneLinePerStopwatchInIdOrder() throws IOException {
+    IStopwatch b = create("b");
+    b.start();
+    advance(3);
+    b.lap();
+    create("a");
+    StringBuilder out = new StringBuilder();
+    assertEquals(2, StopwatchFactory.exportStopwatches(out));
+    assertEquals("a (stopped) - count=0, sum=0, min=0, max=0 (ns)\n"
+        + "b (running) - count=1, sum=3000000, min=3000000, max=3000000 (ns)\n",
+        out.toString());
+  }
+}
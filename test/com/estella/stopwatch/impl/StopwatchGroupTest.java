@@ -0,0 +1,171 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static com.estella.stopwatch.impl.Concurrently.OPERATIONS_PER_THREAD;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+public class StopwatchGroupTest {
+  private static final AtomicInteger groupNumber = new AtomicInteger();
+
+  private final ManualTimeSource time = new ManualTimeSource();
+  private final StopwatchConfig config = StopwatchConfig.defaults().withTimeSource(time);
+  /** Groups are never dropped by the factory, so each test gets a fresh name. */
+  private final StopwatchGroup group =
+      StopwatchFactory.getGroup("group test " + groupNumber.incrementAndGet());
+
+  @After
+  public void tearDown() {
+    StopwatchFactory.setStoppedTimeToLive(0, TimeUnit.MILLISECONDS);
+    group.clear();
+  }
+
+  private IStopwatch add(String id) {
+    return group.getStopwatch(group.getName() + " " + id, config);
+  }
+
+  private void assertFull(String id) {
+    try {
+      add(id);
+      fail("a full group took " + id);
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void fullGroupRejectsNewStopwatchesUntilOneLeaves() {
+    group.setCapacity(2);
+    IStopwatch a = add("a");
+    add("b");
+    assertFull("c");
+    assertFull("c");
+    assertEquals(2, group.size());
+    StopwatchFactory.releaseStopwatch(a);
+    assertNull(group.find(a.getId()));
+    add("c");
+    assertFull("d");
+  }
+
+  @Test
+  public void failedAddsDoNotUseUpTheCapacity() {
+    group.setCapacity(2);
+    IStopwatch a = add("a");
+    for (int i = 0; i < 3; i++) {
+      try {
+        add("a");
+        fail("took a taken id");
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+    StopwatchFactory.getStopwatch(group.getName() + " outside");
+    try {
+      add("outside");
+      fail("took an id the factory already holds");
+    } catch (IllegalArgumentException expected) {
+    } finally {
+      StopwatchFactory.releaseStopwatch(group.getName() + " outside");
+    }
+    assertEquals(1, group.size());
+    assertSame(a, group.find(a.getId()));
+    add("b");
+    assertFull("c");
+  }
+
+  @Test
+  public void loweringTheCapacityKeepsTheMembers() {
+    add("a");
+    add("b");
+    add("c");
+    group.setCapacity(2);
+    assertEquals(3, group.size());
+    assertFull("d");
+    group.setCapacity(0);
+    add("d");
+    assertEquals(4, group.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeCapacityThrows() {
+    group.setCapacity(-1);
+  }
+
+  @Test
+  public void clearReleasesTheMembersAndTheirLaps() {
+    group.setCapacity(2);
+    IStopwatch a = add("a");
+    add("b");
+    a.start();
+    time.advance(3, TimeUnit.MILLISECONDS);
+    a.stop();
+    assertEquals(1, group.getAggregate().getSummary().getCount());
+    assertEquals(2, group.clear());
+    assertEquals(0, group.size());
+    assertFalse(StopwatchFactory.getStopwatches().contains(a));
+    assertEquals(0, group.getAggregate().getSummary().getCount());
+    add("a");
+    add("b");
+    assertEquals(2, group.size());
+  }
+
+  @Test
+  public void evictedStopwatchesLeaveTheGroup() {
+    group.setCapacity(2);
+    IStopwatch idle = add("idle");
+    IStopwatch running = add("running");
+    running.start();
+    StopwatchFactory.setStoppedTimeToLive(1, TimeUnit.MILLISECONDS);
+    time.advance(2, TimeUnit.MILLISECONDS);
+    StopwatchFactory.evictExpired();
+    assertNull(group.find(idle.getId()));
+    assertSame(running, group.find(running.getId()));
+    assertEquals(1, group.size());
+    add("new");
+    assertFull("one too many");
+  }
+
+  @Test
+  public void concurrentAddsNeverOvershootTheCapacity() throws InterruptedException {
+    final int capacity = 10;
+    group.setCapacity(capacity);
+    final AtomicInteger added = new AtomicInteger();
+    final AtomicInteger overshoot = new AtomicInteger();
+    Concurrently.run(new Concurrently.Task() {
+      public void run(int thread) {
+        for (int i = 0; i < OPERATIONS_PER_THREAD / 100; i++) {
+          IStopwatch watch;
+          try {
+            watch = add(thread + " " + i);
+          } catch (IllegalStateException full) {
+            continue;
+          }
+          added.incrementAndGet();
+          if (group.size() > capacity) {
+            overshoot.incrementAndGet();
+          }
+          if (i % 2 == 0) {
+            StopwatchFactory.releaseStopwatch(watch);
+          }
+        }
+      }
+    });
+    assertEquals(0, overshoot.get());
+    assertTrue(added.get() >= capacity);
+    assertTrue(group.size() <= capacity);
+    group.clear();
+    for (int i = 0; i < capacity; i++) {
+      add("after " + i);
+    }
+    assertFull("one too many");
+  }
+}
@@ -0,0 +1,89 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static com.estella.stopwatch.impl.Concurrently.OPERATIONS_PER_THREAD;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StopwatchPoolTest {
+
+  @Test
+  public void emptyPoolHasNothingToHandOut() {
+    TimeSource time = SystemTimeSource.INSTANCE;
+    assertNull(new StopwatchPool(4, time).acquire());
+    assertNull(new StopwatchPool(0, time).acquire());
+    assertFalse(new StopwatchPool(0, time).release(new Stopwatch("dropped")));
+  }
+
+  @Test
+  public void handsBackWhatWasReleased() {
+    StopwatchPool pool = new StopwatchPool(4, SystemTimeSource.INSTANCE);
+    Stopwatch watch = new Stopwatch("pooled");
+    assertTrue(pool.release(watch));
+    assertSame(watch, pool.acquire());
+    assertNull(pool.acquire());
+  }
+
+  @Test
+  public void dropsStopwatchesOnAnotherTimeSource() {
+    StopwatchPool pool = new StopwatchPool(4, new ManualTimeSource());
+    assertFalse(pool.release(new Stopwatch("system time")));
+    assertNull(pool.acquire());
+  }
+
+  @Test
+  public void dropsStopwatchesOnceFull() {
+    StopwatchPool pool = new StopwatchPool(2, SystemTimeSource.INSTANCE);
+    assertTrue(pool.release(new Stopwatch("a")));
+    assertTrue(pool.release(new Stopwatch("b")));
+    assertFalse(pool.release(new Stopwatch("c")));
+    assertNotNull(pool.acquire());
+    assertNotNull(pool.acquire());
+    assertNull(pool.acquire());
+  }
+
+  @Test
+  public void neverHandsOutOneStopwatchTwice() throws InterruptedException {
+    final int capacity = 8;
+    final StopwatchPool pool = new StopwatchPool(capacity, SystemTimeSource.INSTANCE);
+    final Set<Stopwatch> inUse = Collections.synchronizedSet(
+        Collections.newSetFromMap(new IdentityHashMap<Stopwatch, Boolean>()));
+    final AtomicInteger duplicates = new AtomicInteger();
+    for (int i = 0; i < capacity; i++) {
+      pool.release(new Stopwatch("pooled " + i));
+    }
+    Concurrently.run(new Runnable() {
+      public void run() {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          Stopwatch watch = pool.acquire();
+          if (watch == null) {
+            continue;
+          }
+          if (!inUse.add(watch)) {
+            duplicates.incrementAndGet();
+          }
+          inUse.remove(watch);
+          if (!pool.release(watch)) {
+            duplicates.incrementAndGet();
+          }
+        }
+      }
+    });
+    assertEquals(0, duplicates.get());
+    int left = 0;
+    while (pool.acquire() != null) {
+      left++;
+    }
+    assertEquals(capacity, left);
+  }
+}
@@ -0,0 +1,184 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static com.estella.stopwatch.impl.Concurrently.OPERATIONS_PER_THREAD;
+import static com.estella.stopwatch.impl.Concurrently.THREADS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.estella.stopwatch.api.IStopwatch;
+
+public class StopwatchTableTest {
+  private ManualTimeSource time;
+  private StopwatchTable table;
+
+  @Before
+  public void setUp() {
+    time = new ManualTimeSource();
+    table = new StopwatchTable("table", 2, time);
+  }
+
+  private void advance(long millis) {
+    time.advance(millis, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void aggregatesLapsAndTheFinalLap() {
+    int handle = table.create("request");
+    assertEquals("request", table.getId(handle));
+    table.start(handle);
+    assertTrue(table.isRunning(handle));
+    advance(1);
+    table.lap(handle);
+    advance(3);
+    table.stop(handle);
+    assertFalse(table.isRunning(handle));
+    LapSummary summary = table.getLapSummary(handle);
+    assertEquals(2, summary.getCount());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(4), summary.getSum());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), summary.getMin());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(3), summary.getMax());
+  }
+
+  @Test
+  public void startContinuesTheFinalLap() {
+    int handle = table.create(null);
+    assertEquals("table#" + handle, table.getId(handle));
+    table.start(handle);
+    advance(2);
+    table.stop(handle);
+    advance(100);
+    table.start(handle);
+    advance(5);
+    table.stop(handle);
+    LapSummary summary = table.getLapSummary(handle);
+    assertEquals(1, summary.getCount());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(7), summary.getSum());
+  }
+
+  @Test
+  public void resetClearsTheLaps() {
+    int handle = table.create("request");
+    table.start(handle);
+    advance(1);
+    table.lap(handle);
+    table.reset(handle);
+    assertFalse(table.isRunning(handle));
+    assertEquals(0, table.getLapSummary(handle).getCount());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void lapWhenStoppedThrows() {
+    table.lap(table.create("request"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownHandleThrows() {
+    table.start(5);
+  }
+
+  @Test
+  public void growsAndReusesReleasedHandles() {
+    int a = table.create("a");
+    int b = table.create("b");
+    int c = table.create("c");
+    assertEquals(3, table.size());
+    assertTrue(table.release(b));
+    assertFalse(table.release(b));
+    assertEquals(2, table.size());
+    assertEquals(b, table.create("d"));
+    assertEquals("a", table.getId(a));
+    assertEquals("c", table.getId(c));
+    assertEquals("d", table.getId(b));
+  }
+
+  @Test
+  public void viewOfAReleasedStopwatchThrows() {
+    int handle = table.create("request");
+    IStopwatch view = table.view(handle);
+    view.start();
+    advance(1);
+    view.stop();
+    assertEquals("request", view.getId());
+    table.release(handle);
+    int reused = table.create("other");
+    assertEquals(handle, reused);
+    assertNotEquals(view, table.view(reused));
+    try {
+      view.start();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      assertFalse(table.isRunning(reused));
+    }
+  }
+
+  @Test
+  public void viewDoesNotCountTheHeldBackFinalLap() {
+    IStopwatch view = table.view(table.create("request"));
+    List<Long> laps = new ArrayList<>();
+    view.start();
+    advance(1);
+    view.lap();
+    view.stop();
+    assertEquals(1, view.getLapTimesSince(0, laps));
+    view.start();
+    view.lap();
+    assertEquals(2, view.getLapTimesSince(1, laps));
+    assertTrue(laps.isEmpty());
+  }
+
+  @Test
+  public void concurrentLapsAreNotLost() throws InterruptedException {
+    final StopwatchTable shared = new StopwatchTable("shared", 4, SystemTimeSource.INSTANCE);
+    final int handle = shared.create("shared");
+    shared.start(handle);
+    Concurrently.run(new Runnable() {
+      public void run() {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+          shared.lap(handle);
+        }
+      }
+    });
+    shared.stop(handle);
+    assertEquals(THREADS * OPERATIONS_PER_THREAD + 1, shared.getLapSummary(handle).getCount());
+  }
+
+  @Test
+  public void concurrentCreateAndReleaseHandOutEachHandleOnce() throws InterruptedException {
+    final StopwatchTable shared = new StopwatchTable("shared", 4, SystemTimeSource.INSTANCE);
+    final AtomicIntegerArray owners = new AtomicIntegerArray(THREADS * 64);
+    final AtomicIntegerArray duplicates = new AtomicIntegerArray(1);
+    Concurrently.run(new Runnable() {
+      public void run() {
+        int[] mine = new int[16];
+        for (int round = 0; round < OPERATIONS_PER_THREAD / 100; round++) {
+          for (int i = 0; i < mine.length; i++) {
+            mine[i] = shared.create(null);
+            if (!owners.compareAndSet(mine[i], 0, 1)) {
+              duplicates.incrementAndGet(0);
+            }
+            long token = shared.begin();
+            shared.end(mine[i], token);
+          }
+          for (int handle : mine) {
+            assertEquals(1, shared.getLapSummary(handle).getCount());
+            owners.set(handle, 0);
+            assertTrue(shared.release(handle));
+          }
+        }
+      }
+    });
+    assertEquals(0, duplicates.get(0));
+    assertEquals(0, shared.size());
+  }
+}
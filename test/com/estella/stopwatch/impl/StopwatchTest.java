@@ -0,0 +1,237 @@
+package com.estella.stopwatch.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * The lap storage options of {@link Stopwatch} that the other kinds don't
+ * have; the shared IStopwatch behaviour is in StopwatchContractTest.
+ */
+public class StopwatchTest {
+  private final ManualTimeSource time = new ManualTimeSource();
+
+  private void advance(long millis) {
+    time.advance(millis, TimeUnit.MILLISECONDS);
+  }
+
+  private static long nanos(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private Stopwatch newStopwatch(StopwatchConfig config) {
+    return (Stopwatch) config.newStopwatch("watch", time);
+  }
+
+  @Test
+  public void histogramOnlyKeepsNoRawLaps() {
+    Stopwatch watch = newStopwatch(
+        StopwatchConfig.defaults().withHistogram(true).withRawLaps(false));
+    watch.start();
+    advance(1);
+    watch.lap();
+    advance(2);
+    watch.lap();
+    advance(3);
+    watch.stop();
+    assertTrue(watch.getLapTimes().isEmpty());
+    LapHistogram histogram = watch.getLapHistogram();
+    assertEquals(3, histogram.getCount());
+    assertEquals(nanos(6), histogram.getSum());
+    LapSummary summary = watch.getLapSummary();
+    assertEquals(3, summary.getCount());
+    assertEquals(nanos(1), summary.getMin());
+    assertEquals(nanos(3), summary.getMax());
+  }
+
+  @Test
+  public void histogramOnlyResumesTheFinalLap() {
+    Stopwatch watch = newStopwatch(
+        StopwatchConfig.defaults().withHistogram(true).withRawLaps(false));
+    watch.start();
+    advance(1);
+    watch.lap();
+    advance(2);
+    watch.stop();
+    advance(100);
+    watch.start();
+    advance(5);
+    watch.stop();
+    LapSummary summary = watch.getLapSummary();
+    assertEquals(2, summary.getCount());
+    assertEquals(nanos(8), summary.getSum());
+    assertEquals(nanos(7), watch.getLapHistogram().getPercentile(100));
+    watch.reset();
+    assertEquals(0, watch.getLapHistogram().getCount());
+  }
+
+  @Test
+  public void histogramIsAHandedOutCopy() {
+    Stopwatch watch = newStopwatch(StopwatchConfig.defaults().withHistogram(true));
+    watch.start();
+    advance(4);
+    watch.lap();
+    LapHistogram copy = watch.getLapHistogram();
+    watch.lap();
+    assertEquals(1, copy.getCount());
+    assertEquals(2, watch.getLapHistogram().getCount());
+    assertEquals(2, watch.getLapTimes().size());
+    assertNull(newStopwatch(StopwatchConfig.defaults()).getLapHistogram());
+  }
+
+  private Stopwatch newRingStopwatch(int lastLaps) {
+    return newStopwatch(StopwatchConfig.defaults().withLapRetention(lastLaps));
+  }
+
+  /** Laps 1, 2, ... ms long, stopping after the last one. */
+  private void recordLaps(Stopwatch watch, int laps) {
+    watch.start();
+    for (int i = 1; i < laps; i++) {
+      advance(i);
+      watch.lap();
+    }
+    advance(laps);
+    watch.stop();
+  }
+
+  @Test
+  public void ringKeepsTheLastLapsAndSummarizesTheDropped() {
+    Stopwatch watch = newRingStopwatch(3);
+    recordLaps(watch, 5);
+    assertEquals(Arrays.asList(nanos(3), nanos(4), nanos(5)), watch.getLapTimes());
+    LapSummary dropped = watch.getDroppedLapSummary();
+    assertEquals(2, dropped.getCount());
+    assertEquals(nanos(3), dropped.getSum());
+    assertEquals(nanos(1), dropped.getMin());
+    assertEquals(nanos(2), dropped.getMax());
+    LapSummary all = watch.getLapSummary();
+    assertEquals(5, all.getCount());
+    assertEquals(nanos(15), all.getSum());
+    assertEquals(nanos(1), all.getMin());
+  }
+
+  @Test
+  public void fullRingResumesTheFinalLap() {
+    Stopwatch watch = newRingStopwatch(3);
+    recordLaps(watch, 4);
+    assertEquals(Arrays.asList(nanos(2), nanos(3), nanos(4)), watch.getLapTimes());
+    advance(50);
+    watch.start();
+    advance(6);
+    watch.lap();
+    advance(7);
+    watch.stop();
+    assertEquals(Arrays.asList(nanos(3), nanos(10), nanos(7)), watch.getLapTimes());
+    assertEquals(2, watch.getDroppedLapSummary().getCount());
+    assertEquals(5, watch.getLapSummary().getCount());
+    assertEquals(nanos(23), watch.getLapSummary().getSum());
+  }
+
+  @Test
+  public void resetClearsTheDroppedLapsButKeepsNumbering() {
+    Stopwatch watch = newRingStopwatch(2);
+    recordLaps(watch, 5);
+    List<Long> seen = new ArrayList<>();
+    assertEquals(4, watch.getLapTimesSince(0, seen));
+    assertEquals(Arrays.asList(nanos(4)), seen);
+    watch.reset();
+    assertSame(LapSummary.EMPTY, watch.getDroppedLapSummary());
+    assertEquals(0, watch.getLapSummary().getCount());
+    recordLaps(watch, 3);
+    seen.clear();
+    assertEquals(7, watch.getLapTimesSince(4, seen));
+    assertEquals(Arrays.asList(nanos(2)), seen);
+    assertEquals(Arrays.asList(nanos(2), nanos(3)), watch.getLapTimes());
+    assertEquals(1, watch.getDroppedLapSummary().getCount());
+  }
+
+  @Test
+  public void readLapTimesFillsAShortDestinationInParts() {
+    Stopwatch watch = newStopwatch(StopwatchConfig.defaults());
+    watch.start();
+    for (int i = 1; i <= 5; i++) {
+      advance(i);
+      watch.lap();
+    }
+    LapCursor cursor = new LapCursor();
+    long[] dest = new long[2];
+    assertEquals(2, watch.readLapTimes(cursor, dest));
+    assertArrayEquals(new long[] { nanos(1), nanos(2) }, dest);
+    assertEquals(2, watch.readLapTimes(cursor, dest));
+    assertArrayEquals(new long[] { nanos(3), nanos(4) }, dest);
+    assertEquals(1, watch.readLapTimes(cursor, dest));
+    assertEquals(nanos(5), dest[0]);
+    assertEquals(0, watch.readLapTimes(cursor, dest));
+    assertEquals(5, cursor.getPosition());
+    assertEquals(0, cursor.getMissed());
+  }
+
+  @Test
+  public void readLapTimesCountsLapsTheRingDroppedAsMissed() {
+    Stopwatch watch = newRingStopwatch(3);
+    LapCursor cursor = new LapCursor();
+    long[] dest = new long[8];
+    recordLaps(watch, 6);
+    assertEquals(2, watch.readLapTimes(cursor, dest));
+    assertEquals(nanos(4), dest[0]);
+    assertEquals(nanos(5), dest[1]);
+    assertEquals(3, cursor.getMissed());
+    assertEquals(5, cursor.getPosition());
+  }
+
+  @Test
+  public void readLapTimesCarriesACursorAcrossReset() {
+    Stopwatch watch = newStopwatch(StopwatchConfig.defaults());
+    LapCursor cursor = new LapCursor();
+    long[] dest = new long[8];
+    watch.start();
+    advance(1);
+    watch.lap();
+    assertEquals(1, watch.readLapTimes(cursor, dest));
+    advance(2);
+    watch.lap();
+    advance(3);
+    watch.lap();
+    watch.reset();
+    watch.start();
+    advance(4);
+    watch.lap();
+    assertEquals(1, watch.readLapTimes(cursor, dest));
+    assertEquals(nanos(4), dest[0]);
+    assertEquals(2, cursor.getMissed());
+    assertEquals(4, cursor.getPosition());
+  }
+
+  @Test
+  public void labelSummariesOnlyCoverTheLabelsThisStopwatchUsed() {
+    for (int i = 0; i < 500; i++) {
+      LapLabels.idOf("unused label " + i);
+    }
+    Stopwatch watch = newStopwatch(StopwatchConfig.defaults());
+    watch.start();
+    for (int i = 1; i <= 20; i++) {
+      advance(i);
+      watch.lap("stage " + i % 10);
+    }
+    for (int i = 0; i < 10; i++) {
+      LapSummary summary = watch.getLabelSummary("stage " + i);
+      long first = i == 0 ? 10 : i;
+      assertEquals(2, summary.getCount());
+      assertEquals(nanos(first), summary.getMin());
+      assertEquals(nanos(first + 10), summary.getMax());
+    }
+    assertSame(LapSummary.EMPTY, watch.getLabelSummary("unused label 7"));
+    assertSame(LapSummary.EMPTY, watch.getLabelSummary("never defined"));
+    watch.reset();
+    assertSame(LapSummary.EMPTY, watch.getLabelSummary("stage 3"));
+  }
+}